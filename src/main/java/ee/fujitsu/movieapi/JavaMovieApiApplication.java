@@ -3,20 +3,26 @@ import ee.fujitsu.movieapi.db.configuration.ApiConfiguration;
 import ee.fujitsu.movieapi.db.model.movie.Movie;
 import ee.fujitsu.movieapi.db.repository.MovieRepository;
 import ee.fujitsu.movieapi.rest.api.exception.general.NotFoundException;
+import ee.fujitsu.movieapi.rest.api.exception.movie.MovieIdNotUniqueException;
+import ee.fujitsu.movieapi.rest.api.exception.movie.MovieValidationException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.InitializingBean;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
 import org.springframework.context.ConfigurableApplicationContext;
-import org.springframework.context.annotation.Bean;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
+import java.io.IOException;
 import java.time.LocalDate;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Set;
 
 @SpringBootApplication
+@EnableScheduling
 public class JavaMovieApiApplication {
 	private final MovieRepository movieRepository;
 	private static final Logger logger = LoggerFactory.getLogger(JavaMovieApiApplication.class);
@@ -33,19 +39,24 @@ public class JavaMovieApiApplication {
 		logger.info("Using statistics database file: " + apiConfig.getOrderStatsFileName() + apiConfig.getFileExtension());
 	}
 
-	@Bean
-	InitializingBean testData() {
-		return () -> {
-			try{
-				Movie movie = movieRepository.findById("testId");
-			} catch (NotFoundException e){
-				Movie movie = new Movie();
-				movie.setImdbId("testId");
-				movie.setTitle("testTitle");
-				movie.setCategories(new HashSet<String>(Arrays.asList("Test")));
-				movie.setReleaseDate(LocalDate.of(1999, 10, 10));
-				movieRepository.add(movie);
-			}
-		};
+	/**
+	 * Adds the test movie once the application is ready, after the stores have been loaded
+	 */
+	@EventListener
+	public void addTestData(AvailabilityChangeEvent<ReadinessState> event)
+			throws IOException, MovieIdNotUniqueException, MovieValidationException {
+		if (event.getState() != ReadinessState.ACCEPTING_TRAFFIC) {
+			return;
+		}
+		try{
+			Movie movie = movieRepository.findLocalById("testId");
+		} catch (NotFoundException e){
+			Movie movie = new Movie();
+			movie.setImdbId("testId");
+			movie.setTitle("testTitle");
+			movie.setCategories(new HashSet<String>(Arrays.asList("Test")));
+			movie.setReleaseDate(LocalDate.of(1999, 10, 10));
+			movieRepository.add(movie);
+		}
 	}
 }
\ No newline at end of file
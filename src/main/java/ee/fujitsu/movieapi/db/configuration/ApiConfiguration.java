@@ -1,5 +1,6 @@
 package ee.fujitsu.movieapi.db.configuration;
 
+import ee.fujitsu.movieapi.db.persistence.DurabilityMode;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
 
@@ -15,9 +16,48 @@ public class ApiConfiguration {
     private String orderFileName;
     @Value("${db.orderStatsDbFileName}")
     private String orderStatsFileName;
+    @Value("${db.orderLogSnapshotInterval:1000}")
+    private int orderLogSnapshotInterval;
+    @Value("${db.durability:BATCHED}")
+    private DurabilityMode durabilityMode;
+    @Value("${db.commitWindowMs:2}")
+    private long commitWindowMs;
+    @Value("${db.maxBatch:256}")
+    private int maxBatch;
+    @Value("${db.orderLockStripes:64}")
+    private int orderLockStripes;
+    @Value("${db.startupThreads:3}")
+    private int startupThreads;
+    @Value("${api.responseCache.maxBytes:67108864}")
+    private long responseCacheMaxBytes;
+    @Value("${api.idempotency.maxBytes:16777216}")
+    private long idempotencyMaxBytes;
+    @Value("${api.idempotency.ttlMinutes:60}")
+    private long idempotencyTtlMinutes;
     @Value("${omdb.apiKey}")
     private String apiKey;
-    private String omdbUrl = "http://www.omdbapi.com/";
+    @Value("${omdb.cache.maxEntries:10000}")
+    private long omdbCacheMaxEntries;
+    @Value("${omdb.cache.ttlMinutes:60}")
+    private long omdbCacheTtlMinutes;
+    @Value("${omdb.maxConnections:50}")
+    private int omdbMaxConnections;
+    @Value("${omdb.maxConnectionsPerRoute:20}")
+    private int omdbMaxConnectionsPerRoute;
+    @Value("${omdb.connectTimeoutMs:1000}")
+    private int omdbConnectTimeoutMs;
+    @Value("${omdb.readTimeoutMs:2000}")
+    private int omdbReadTimeoutMs;
+    @Value("${omdb.async.enabled:true}")
+    private boolean omdbAsyncEnabled;
+    @Value("${omdb.async.threads:8}")
+    private int omdbAsyncThreads;
+    @Value("${omdb.async.queueCapacity:200}")
+    private int omdbAsyncQueueCapacity;
+    @Value("${omdb.async.deadlineMs:1500}")
+    private long omdbAsyncDeadlineMs;
+    @Value("${omdb.url:http://www.omdbapi.com/}")
+    private String omdbUrl;
 
 
     public String getOrderStatsFileName() {
@@ -44,7 +84,83 @@ public class ApiConfiguration {
         return apiKey;
     }
 
+    public long getOmdbCacheMaxEntries() {
+        return omdbCacheMaxEntries;
+    }
+
+    public long getOmdbCacheTtlMinutes() {
+        return omdbCacheTtlMinutes;
+    }
+
+    public int getOmdbMaxConnections() {
+        return omdbMaxConnections;
+    }
+
+    public int getOmdbMaxConnectionsPerRoute() {
+        return omdbMaxConnectionsPerRoute;
+    }
+
+    public int getOmdbConnectTimeoutMs() {
+        return omdbConnectTimeoutMs;
+    }
+
+    public int getOmdbReadTimeoutMs() {
+        return omdbReadTimeoutMs;
+    }
+
+    public boolean isOmdbAsyncEnabled() {
+        return omdbAsyncEnabled;
+    }
+
+    public int getOmdbAsyncThreads() {
+        return omdbAsyncThreads;
+    }
+
+    public int getOmdbAsyncQueueCapacity() {
+        return omdbAsyncQueueCapacity;
+    }
+
+    public long getOmdbAsyncDeadlineMs() {
+        return omdbAsyncDeadlineMs;
+    }
+
     public String getOrderFileName() {
         return orderFileName;
     }
+
+    public int getOrderLogSnapshotInterval() {
+        return orderLogSnapshotInterval;
+    }
+
+    public DurabilityMode getDurabilityMode() {
+        return durabilityMode;
+    }
+
+    public long getCommitWindowMs() {
+        return commitWindowMs;
+    }
+
+    public int getMaxBatch() {
+        return maxBatch;
+    }
+
+    public int getOrderLockStripes() {
+        return orderLockStripes;
+    }
+
+    public int getStartupThreads() {
+        return startupThreads;
+    }
+
+    public long getResponseCacheMaxBytes() {
+        return responseCacheMaxBytes;
+    }
+
+    public long getIdempotencyMaxBytes() {
+        return idempotencyMaxBytes;
+    }
+
+    public long getIdempotencyTtlMinutes() {
+        return idempotencyTtlMinutes;
+    }
 }
@@ -0,0 +1,22 @@
+package ee.fujitsu.movieapi.db.configuration;
+
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Jackson modules of the ObjectMapper used for responses. The db file mappers find the same modules on the classpath.
+ */
+@Configuration
+public class JacksonConfiguration {
+    /**
+     * Replaces reflective getter, setter and constructor calls with generated lambdas
+     *
+     * @return module, registered by Spring Boot on its ObjectMapper
+     */
+    @Bean
+    public Module blackbirdModule() {
+        return new BlackbirdModule();
+    }
+}
@@ -0,0 +1,148 @@
+package ee.fujitsu.movieapi.db.metadata;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import ee.fujitsu.movieapi.db.configuration.ApiConfiguration;
+import ee.fujitsu.movieapi.db.model.movie.MovieMetadata;
+import ee.fujitsu.movieapi.db.model.statistics.MetadataCacheStatistics;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestClientException;
+
+import javax.annotation.PreDestroy;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * Fetches movie metadata from omdbApi and keeps it in a bounded cache,
+ * so that popular titles are fetched only once per TTL.
+ * Concurrent misses for the same id share a single in-flight fetch.
+ * Asynchronous fetches run on a dedicated bounded executor.
+ */
+@Service
+public class MovieMetadataService {
+    private final OmdbClient omdbClient;
+    private final Cache<String, MovieMetadata> cache;
+    private final Map<String, CompletableFuture<MovieMetadata>> inFlight = new ConcurrentHashMap<>();
+    private final ThreadPoolExecutor executor;
+
+    public MovieMetadataService(ApiConfiguration apiConfiguration, OmdbClient omdbClient) {
+        this.omdbClient = omdbClient;
+        this.executor = new ThreadPoolExecutor(
+                apiConfiguration.getOmdbAsyncThreads(), apiConfiguration.getOmdbAsyncThreads(),
+                60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(apiConfiguration.getOmdbAsyncQueueCapacity()),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "omdb-fetch");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.executor.allowCoreThreadTimeOut(true);
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(apiConfiguration.getOmdbCacheMaxEntries())
+                .expireAfterWrite(apiConfiguration.getOmdbCacheTtlMinutes(), TimeUnit.MINUTES)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Returns metadata of the movie, fetching it from omdbApi on a cache miss
+     *
+     * @param imdbId IMDB id
+     * @return movie metadata
+     * @throws RestClientException if unable to fetch
+     */
+    public MovieMetadata getMetadata(String imdbId) throws RestClientException {
+        MovieMetadata cached = cache.getIfPresent(imdbId);
+        if (cached != null) {
+            return cached;
+        }
+        CompletableFuture<MovieMetadata> fetch = new CompletableFuture<>();
+        CompletableFuture<MovieMetadata> existing = inFlight.putIfAbsent(imdbId, fetch);
+        if (existing != null) {
+            return await(existing);
+        }
+        completeFetch(imdbId, fetch);
+        return await(fetch);
+    }
+
+    /**
+     * Returns metadata of the movie without blocking the caller.
+     * On a cache miss the fetch runs on the omdb executor.
+     *
+     * @param imdbId IMDB id
+     * @return future completed with metadata, or exceptionally if unable to fetch
+     * or the executor queue is full
+     */
+    public CompletableFuture<MovieMetadata> getMetadataAsync(String imdbId) {
+        MovieMetadata cached = cache.getIfPresent(imdbId);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        CompletableFuture<MovieMetadata> fetch = new CompletableFuture<>();
+        CompletableFuture<MovieMetadata> existing = inFlight.putIfAbsent(imdbId, fetch);
+        if (existing != null) {
+            return existing.copy();
+        }
+        try {
+            executor.execute(() -> completeFetch(imdbId, fetch));
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(imdbId, fetch);
+            fetch.completeExceptionally(e);
+        }
+        return fetch.copy();
+    }
+
+    @PreDestroy
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Drops cached metadata of the movie
+     *
+     * @param imdbId IMDB id
+     */
+    public void invalidate(String imdbId) {
+        cache.invalidate(imdbId);
+    }
+
+    /**
+     * Returns hit, miss and eviction counters of the cache
+     *
+     * @return cache statistics
+     */
+    public MetadataCacheStatistics getStatistics() {
+        CacheStats stats = cache.stats();
+        MetadataCacheStatistics statistics = new MetadataCacheStatistics();
+        statistics.setSize(cache.size());
+        statistics.setHitCount(stats.hitCount());
+        statistics.setMissCount(stats.missCount());
+        statistics.setEvictionCount(stats.evictionCount());
+        statistics.setHitRate(stats.hitRate());
+        return statistics;
+    }
+
+    private void completeFetch(String imdbId, CompletableFuture<MovieMetadata> fetch) {
+        try {
+            MovieMetadata metadata = omdbClient.fetch(imdbId);
+            cache.put(imdbId, metadata);
+            fetch.complete(metadata);
+        } catch (RuntimeException e) {
+            fetch.completeExceptionally(e);
+        } finally {
+            inFlight.remove(imdbId, fetch);
+        }
+    }
+
+    private static MovieMetadata await(CompletableFuture<MovieMetadata> fetch) throws RestClientException {
+        try {
+            return fetch.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RestClientException) {
+                throw (RestClientException) e.getCause();
+            }
+            throw new RestClientException("Unable to fetch movie metadata", e.getCause());
+        }
+    }
+}
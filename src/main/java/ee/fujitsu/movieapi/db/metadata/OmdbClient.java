@@ -0,0 +1,69 @@
+package ee.fujitsu.movieapi.db.metadata;
+
+import ee.fujitsu.movieapi.db.configuration.ApiConfiguration;
+import ee.fujitsu.movieapi.db.model.movie.MovieMetadata;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HTTP client for omdbApi. Connections are pooled and kept alive between requests,
+ * the number of concurrent requests is bounded by the pool size, and every request
+ * is bounded by connect, pool wait and read timeouts.
+ */
+@Component
+public class OmdbClient {
+    private final ApiConfiguration apiConfiguration;
+    private final CloseableHttpClient httpClient;
+    private final RestTemplate restTemplate;
+
+    public OmdbClient(ApiConfiguration apiConfiguration) {
+        this.apiConfiguration = apiConfiguration;
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(apiConfiguration.getOmdbMaxConnections());
+        connectionManager.setDefaultMaxPerRoute(apiConfiguration.getOmdbMaxConnectionsPerRoute());
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(apiConfiguration.getOmdbConnectTimeoutMs())
+                .setConnectionRequestTimeout(apiConfiguration.getOmdbConnectTimeoutMs())
+                .setSocketTimeout(apiConfiguration.getOmdbReadTimeoutMs())
+                .build();
+        this.httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .evictIdleConnections(30, TimeUnit.SECONDS)
+                .build();
+        this.restTemplate = new RestTemplate(new HttpComponentsClientHttpRequestFactory(httpClient));
+    }
+
+    /**
+     * Fetches metadata of the movie from omdbApi
+     *
+     * @param imdbId IMDB id
+     * @return movie metadata
+     * @throws RestClientException if unable to fetch or the request timed out
+     */
+    public MovieMetadata fetch(String imdbId) throws RestClientException {
+        String url = apiConfiguration.getOmdbUrl()
+                + "?apikey=" + apiConfiguration.getApiKey()
+                + "&i=" + imdbId;
+        MovieMetadata metadata = restTemplate.getForObject(url, MovieMetadata.class);
+        if (metadata == null) {
+            throw new RestClientException("Empty response from omdbApi");
+        }
+        return metadata;
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        httpClient.close();
+    }
+}
@@ -24,6 +24,24 @@ public class Movie {
     @JsonProperty("metadata")
     public MovieMetadata movieMetadata;
 
+    public Movie() {
+    }
+
+    /**
+     * Creates a shallow copy of the movie
+     *
+     * @param movie movie to copy
+     */
+    public Movie(Movie movie) {
+        this.imdbId = movie.imdbId;
+        this.title = movie.title;
+        this.releaseDate = movie.releaseDate;
+        this.categories = movie.categories;
+        this.priceClass = movie.priceClass;
+        this.price = movie.price;
+        this.movieMetadata = movie.movieMetadata;
+    }
+
     public String getImdbId() {
         return imdbId;
     }
@@ -91,16 +109,6 @@ public class Movie {
      * Automatically sets price basing on movie's price class
      */
     public void setPrice() {
-        switch (getPriceClass()) {
-            case NEW:
-                this.price = (BigDecimal.valueOf(MoviePriceClass.PriceClassConstants.NEW_PRICE));
-                break;
-            case REGULAR:
-                this.price = (BigDecimal.valueOf(MoviePriceClass.PriceClassConstants.REGULAR_PRICE));
-                break;
-            case OLD:
-                this.price = (BigDecimal.valueOf(MoviePriceClass.PriceClassConstants.OLD_PRICE));
-                break;
-        }
+        this.price = getPriceClass().getPrice();
     }
 }
@@ -1,20 +1,57 @@
 package ee.fujitsu.movieapi.db.model.movie;
 
-import ee.fujitsu.movieapi.db.model.BigDecimalSerializer;
-
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.temporal.ChronoUnit;
 
 public enum MoviePriceClass {
-    NEW, REGULAR, OLD;
+    NEW(PriceClassConstants.NEW_PRICE_CENTS),
+    REGULAR(PriceClassConstants.REGULAR_PRICE_CENTS),
+    OLD(PriceClassConstants.OLD_PRICE_CENTS);
 
     public static class PriceClassConstants {
         public static final int WEEKS_NEW = 52;
         public static final int WEEKS_REGULAR = 162;
-        public static final double NEW_PRICE = 5.0;
-        public static final double REGULAR_PRICE = 3.49;
-        public static final double OLD_PRICE = 1.99;
+        /**
+         * Days after release on which a movie stops being new
+         */
+        public static final int DAYS_UNTIL_REGULAR = (WEEKS_NEW + 1) * 7;
+        /**
+         * Days after release on which a movie becomes old
+         */
+        public static final int DAYS_UNTIL_OLD = WEEKS_REGULAR * 7;
+        public static final long NEW_PRICE_CENTS = 500;
+        public static final long REGULAR_PRICE_CENTS = 349;
+        public static final long OLD_PRICE_CENTS = 199;
+        public static final BigDecimal NEW_PRICE = BigDecimal.valueOf(NEW_PRICE_CENTS, 2);
+        public static final BigDecimal REGULAR_PRICE = BigDecimal.valueOf(REGULAR_PRICE_CENTS, 2);
+        public static final BigDecimal OLD_PRICE = BigDecimal.valueOf(OLD_PRICE_CENTS, 2);
+    }
+
+    private final long priceCents;
+    private final BigDecimal price;
+
+    MoviePriceClass(long priceCents) {
+        this.priceCents = priceCents;
+        this.price = BigDecimal.valueOf(priceCents, 2);
+    }
+
+    /**
+     * Returns weekly price of the class in cents
+     *
+     * @return price in cents
+     */
+    public long getPriceCents() {
+        return priceCents;
+    }
+
+    /**
+     * Returns weekly price of the class. The instance is shared, BigDecimal is immutable.
+     *
+     * @return price
+     */
+    public BigDecimal getPrice() {
+        return price;
     }
 
     /**
@@ -24,7 +61,17 @@ public enum MoviePriceClass {
      * @return enum movie price class
      */
     public static MoviePriceClass getMoviePriceClass(LocalDate releaseDate) throws NullPointerException{
-        LocalDate today = LocalDate.now();
+        return getMoviePriceClass(releaseDate, LocalDate.now());
+    }
+
+    /**
+     * Calculates movie price class with given release date on the given day
+     *
+     * @param releaseDate movie release date
+     * @param today       day to calculate the price class for
+     * @return enum movie price class
+     */
+    public static MoviePriceClass getMoviePriceClass(LocalDate releaseDate, LocalDate today) throws NullPointerException{
         Long weeks = ChronoUnit.WEEKS.between(releaseDate, today);
         if (!releaseDate.isAfter(today)) {
             if (weeks <= PriceClassConstants.WEEKS_NEW) {
@@ -41,26 +88,51 @@ public enum MoviePriceClass {
 
 
     /**
-     * Calculates total price, summing up prices per week
+     * Calculates total price of renting a movie from today
      * @param releaseDate Movie release date
      * @param rentWeeks Rent period in weeks
      * @return Price
      */
     public static BigDecimal calculateTotalPrice(LocalDate releaseDate, int rentWeeks){
-        LocalDate orderDate = LocalDate.now();
+        return calculateTotalPrice(releaseDate, LocalDate.now(), rentWeeks);
+    }
+
+    /**
+     * Calculates total price of renting a movie from the order date
+     * @param releaseDate Movie release date
+     * @param orderDate First day of the rent
+     * @param rentWeeks Rent period in weeks
+     * @return Price
+     */
+    public static BigDecimal calculateTotalPrice(LocalDate releaseDate, LocalDate orderDate, int rentWeeks){
         long releasedWeeksAgo = ChronoUnit.WEEKS.between(releaseDate, orderDate);
-        long weeksEndOfRent = releasedWeeksAgo + rentWeeks;
-        double total = 0;
+        return BigDecimal.valueOf(calculateTotalPriceCents(releasedWeeksAgo, rentWeeks), 2);
+    }
 
-        for(long i = weeksEndOfRent; i < weeksEndOfRent+rentWeeks; i++){
-            if(i <= PriceClassConstants.WEEKS_NEW){
-                total += PriceClassConstants.NEW_PRICE;
-            }else if(i < PriceClassConstants.WEEKS_REGULAR){
-                total += PriceClassConstants.REGULAR_PRICE;
-            } else{
-                total += PriceClassConstants.OLD_PRICE;
-            }
+    /**
+     * Calculates total price in cents. Every rented week is priced by the class the movie is in
+     * during that week: weeks up to WEEKS_NEW after release are new, weeks before WEEKS_REGULAR are regular,
+     * later ones are old. Instead of summing week by week, the rent period is split at the class boundaries,
+     * so the cost does not depend on the rent length.
+     * @param releasedWeeksAgo Full weeks between release and the first day of the rent
+     * @param rentWeeks Rent period in weeks, non positive periods cost nothing
+     * @return Price in cents
+     */
+    public static long calculateTotalPriceCents(long releasedWeeksAgo, int rentWeeks){
+        if (rentWeeks <= 0) {
+            return 0;
         }
-        return BigDecimal.valueOf(total);
+        long end = releasedWeeksAgo + rentWeeks;
+        long newWeeks = weeksBetween(releasedWeeksAgo, Math.min(end, PriceClassConstants.WEEKS_NEW + 1));
+        long regularWeeks = weeksBetween(Math.max(releasedWeeksAgo, PriceClassConstants.WEEKS_NEW + 1),
+                Math.min(end, PriceClassConstants.WEEKS_REGULAR));
+        long oldWeeks = weeksBetween(Math.max(releasedWeeksAgo, PriceClassConstants.WEEKS_REGULAR), end);
+        return newWeeks * PriceClassConstants.NEW_PRICE_CENTS
+                + regularWeeks * PriceClassConstants.REGULAR_PRICE_CENTS
+                + oldWeeks * PriceClassConstants.OLD_PRICE_CENTS;
+    }
+
+    private static long weeksBetween(long from, long to) {
+        return Math.max(0, to - from);
     }
 }
@@ -16,6 +16,7 @@ public class Order {
     private OrderStatus orderStatus = OrderStatus.OPEN;
     @JsonSerialize(using = BigDecimalSerializer.class)
     private BigDecimal totalPrice = BigDecimal.valueOf(0);
+    private long version;
 
     public Order(List<OrderItem> orderItemList) {
         this.orderItemList = orderItemList;
@@ -24,10 +25,29 @@ public class Order {
     public Order() {
     }
 
+    /**
+     * Copies the order, so that it can be modified without affecting the stored one.
+     * Order items are shared, they are not modified once added.
+     *
+     * @param order order to copy
+     */
+    public Order(Order order) {
+        this.orderId = order.orderId;
+        this.orderItemList = new ArrayList<>(order.orderItemList);
+        this.timestamp = order.timestamp;
+        this.orderStatus = order.orderStatus;
+        this.totalPrice = order.totalPrice;
+        this.version = order.version;
+    }
+
     public String getOrderId() {
         return orderId;
     }
 
+    public void setOrderId(String orderId) {
+        this.orderId = orderId;
+    }
+
     public void generateOrderId() {
         UUID uuid = UUID.randomUUID();
         this.orderId = uuid.toString();
@@ -65,6 +85,17 @@ public class Order {
         this.totalPrice = totalPrice;
     }
 
+    /**
+     * Version of the stored order, incremented on every update. Used to detect concurrent modifications.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
     public void calculateTotalPrice() {
         BigDecimal total = BigDecimal.valueOf(0);
         for(OrderItem item : orderItemList){
@@ -5,44 +5,128 @@ import com.fasterxml.jackson.annotation.JsonInclude;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToLongFunction;
 
+/**
+ * Order statistics per movie id. Both counters of a movie are kept in one immutable MovieCounts,
+ * which updates replace atomically through the concurrent map, so concurrent checkouts never lose updates,
+ * only checkouts of the same movie contend with each other, and a snapshot never holds an order count
+ * without its rented weeks. Removing a movie drops its entry, atomically with respect to updates.
+ */
 @JsonInclude(JsonInclude.Include.NON_DEFAULT)
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class OrderStatistics {
-    private Map<String, Integer> movieOrderCount = new HashMap<>();
-    private Map<String, Integer> movieRentedFor = new HashMap<>();
+    private final Map<String, MovieCounts> counts = new ConcurrentHashMap<>();
+
+    /**
+     * Order count and rented weeks of one movie
+     */
+    private static final class MovieCounts {
+        private final long orderCount;
+        private final long rentedWeeks;
+
+        private MovieCounts(long orderCount, long rentedWeeks) {
+            this.orderCount = orderCount;
+            this.rentedWeeks = rentedWeeks;
+        }
+
+        private MovieCounts plus(MovieCounts other) {
+            return new MovieCounts(orderCount + other.orderCount, rentedWeeks + other.rentedWeeks);
+        }
+
+        private boolean isZero() {
+            return orderCount == 0 && rentedWeeks == 0;
+        }
+    }
 
     public Map<String, Integer> getMovieOrderCount() {
-        return movieOrderCount;
+        return toIntegers(movieCounts -> movieCounts.orderCount);
     }
 
     public void setMovieOrderCount(Map<String, Integer> movieOrderCount) {
-        this.movieOrderCount = movieOrderCount;
+        counts.replaceAll((movieId, movieCounts) -> new MovieCounts(0, movieCounts.rentedWeeks));
+        if (movieOrderCount != null) {
+            movieOrderCount.forEach((movieId, value) -> add(movieId, value, 0));
+        }
+        counts.values().removeIf(MovieCounts::isZero);
     }
 
     public Map<String, Integer> getMovieRentedFor() {
-        return movieRentedFor;
+        return toIntegers(movieCounts -> movieCounts.rentedWeeks);
     }
 
     public void setMovieRentedFor(Map<String, Integer> movieRentedFor) {
-        this.movieRentedFor = movieRentedFor;
+        counts.replaceAll((movieId, movieCounts) -> new MovieCounts(movieCounts.orderCount, 0));
+        if (movieRentedFor != null) {
+            movieRentedFor.forEach((movieId, value) -> add(movieId, 0, value));
+        }
+        counts.values().removeIf(MovieCounts::isZero);
     }
 
-    public void addToOrderCount(String movieId, Integer value){
-        movieOrderCount.putIfAbsent(movieId, 0);
-        System.out.println(movieOrderCount.get(movieId));
-        movieOrderCount.put(movieId, movieOrderCount.get(movieId) + value);
+    public void addToOrderCount(String movieId, int value){
+        add(movieId, value, 0);
     }
-    public void addToRentedFor(String movieId, Integer value){
-        movieRentedFor.putIfAbsent(movieId, 0);
-        movieRentedFor.put(movieId, movieRentedFor.get(movieId).intValue() + value);
+
+    public void addToRentedFor(String movieId, int value){
+        add(movieId, 0, value);
+    }
+
+    /**
+     * Records one rental of the movie, updating both counters as a single step
+     *
+     * @param movieId movie id
+     * @param weeks   rent duration in weeks
+     */
+    public void recordRental(String movieId, int weeks) {
+        add(movieId, 1, weeks);
     }
 
     public void removeFromOrderCount(String movieId){
-        movieOrderCount.remove(movieId);
+        counts.computeIfPresent(movieId, (key, movieCounts) -> nullIfZero(new MovieCounts(0, movieCounts.rentedWeeks)));
     }
 
     public  void removeFromRentedFor(String movieId){
-        movieRentedFor.remove(movieId);
+        counts.computeIfPresent(movieId, (key, movieCounts) -> nullIfZero(new MovieCounts(movieCounts.orderCount, 0)));
+    }
+
+    /**
+     * Removes the movie from both counters as a single step
+     *
+     * @param movieId movie id
+     */
+    public void remove(String movieId) {
+        counts.remove(movieId);
+    }
+
+    /**
+     * Returns a copy of the statistics. The counters of every movie are copied as a pair,
+     * so no rental is in the order count of the copy without being in its rented weeks.
+     *
+     * @return statistics copy
+     */
+    public OrderStatistics snapshot() {
+        OrderStatistics snapshot = new OrderStatistics();
+        snapshot.counts.putAll(counts);
+        return snapshot;
+    }
+
+    private void add(String movieId, long orderCount, long rentedWeeks) {
+        counts.merge(movieId, new MovieCounts(orderCount, rentedWeeks), MovieCounts::plus);
+    }
+
+    private static MovieCounts nullIfZero(MovieCounts movieCounts) {
+        return movieCounts.isZero() ? null : movieCounts;
+    }
+
+    private Map<String, Integer> toIntegers(ToLongFunction<MovieCounts> counter) {
+        Map<String, Integer> values = new HashMap<>();
+        counts.forEach((movieId, movieCounts) -> {
+            long value = counter.applyAsLong(movieCounts);
+            if (value != 0) {
+                values.put(movieId, (int) value);
+            }
+        });
+        return values;
     }
 }
@@ -0,0 +1,235 @@
+package ee.fujitsu.movieapi.db.persistence;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Versioned binary snapshot of a list of records. The file is laid out as
+ * [magic][format version][record kind] [records] [offset of every record] [record count][offset table position][magic],
+ * so it can be written as a stream and read through a memory mapping: opening a snapshot only checks the header
+ * and the trailer, and the list returned by read decodes a record when it is accessed, with the operating system
+ * paging the file in as needed. Loading a db file through BinarySnapshotFormat still decodes every record.
+ * Snapshots are limited to 2 GB, the size of a single mapping.
+ */
+public class BinarySnapshot {
+    public static final String FILE_EXTENSION = ".bin";
+    public static final short FORMAT_VERSION = 1;
+    private static final int MAGIC = 0x464D4442;
+    private static final int HEADER_SIZE = Integer.BYTES + Short.BYTES + 1;
+    private static final int TRAILER_SIZE = Integer.BYTES + Integer.BYTES + Integer.BYTES;
+    private static final int NULL_LENGTH = -1;
+    private static final long NULL_DATE = Long.MIN_VALUE;
+
+    /**
+     * Writes the records to a new snapshot that atomically replaces the target
+     *
+     * @param target  snapshot file
+     * @param codec   codec of the records
+     * @param records records in the order they are read back
+     * @param <T>     record type
+     * @throws IOException if unable to write, or if the snapshot would exceed 2 GB
+     */
+    public static <T> void write(File target, SnapshotCodec<T> codec, Collection<? extends T> records) throws IOException {
+        DataFiles.writeAtomically(target, stream -> {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream, 64 * 1024));
+            out.writeInt(MAGIC);
+            out.writeShort(FORMAT_VERSION);
+            out.writeByte(codec.getKind());
+            int[] offsets = new int[records.size()];
+            int count = 0;
+            for (T record : records) {
+                offsets[count++] = out.size();
+                codec.write(out, record);
+                checkSize(out, target);
+            }
+            int tableOffset = out.size();
+            for (int offset : offsets) {
+                out.writeInt(offset);
+            }
+            out.writeInt(count);
+            out.writeInt(tableOffset);
+            out.writeInt(MAGIC);
+            checkSize(out, target);
+            out.flush();
+        });
+    }
+
+    /**
+     * Maps a snapshot into memory. The returned list decodes a record every time it is accessed,
+     * callers that keep the records should copy them once.
+     *
+     * @param file  snapshot file
+     * @param codec codec of the records
+     * @param <T>   record type
+     * @return read-only list of the records
+     * @throws IOException if unable to read, or if the file is not a snapshot of this kind and version
+     */
+    public static <T> List<T> read(File file, SnapshotCodec<T> codec) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot " + file + " exceeds 2 GB");
+            }
+            if (size < HEADER_SIZE + TRAILER_SIZE) {
+                throw new StreamCorruptedException("Snapshot " + file + " is truncated");
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        int size = buffer.capacity();
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(size - Integer.BYTES) != MAGIC) {
+            throw new StreamCorruptedException(file + " is not a binary snapshot");
+        }
+        short version = buffer.getShort(Integer.BYTES);
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Snapshot " + file + " has unsupported format version " + version);
+        }
+        byte kind = buffer.get(Integer.BYTES + Short.BYTES);
+        if (kind != codec.getKind()) {
+            throw new IOException("Snapshot " + file + " holds records of kind " + kind + ", expected " + codec.getKind());
+        }
+        int count = buffer.getInt(size - TRAILER_SIZE);
+        int tableOffset = buffer.getInt(size - TRAILER_SIZE + Integer.BYTES);
+        if (count < 0 || tableOffset < HEADER_SIZE || (long) tableOffset + (long) count * Integer.BYTES != size - TRAILER_SIZE) {
+            throw new StreamCorruptedException("Snapshot " + file + " has a damaged offset table");
+        }
+        return new MappedRecords<>(buffer, codec, count, tableOffset);
+    }
+
+    private static void checkSize(DataOutputStream out, File target) throws IOException {
+        // The byte count of DataOutputStream stops at Integer.MAX_VALUE instead of overflowing
+        if (out.size() == Integer.MAX_VALUE) {
+            throw new IOException("Snapshot " + target + " exceeds 2 GB");
+        }
+    }
+
+    public static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(NULL_LENGTH);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    public static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public static void writeDate(DataOutputStream out, LocalDate value) throws IOException {
+        out.writeLong(value == null ? NULL_DATE : value.toEpochDay());
+    }
+
+    public static LocalDate readDate(ByteBuffer in) {
+        long epochDay = in.getLong();
+        return epochDay == NULL_DATE ? null : LocalDate.ofEpochDay(epochDay);
+    }
+
+    public static void writeDateTime(DataOutputStream out, LocalDateTime value) throws IOException {
+        if (value == null) {
+            out.writeLong(NULL_DATE);
+            return;
+        }
+        out.writeLong(value.toEpochSecond(ZoneOffset.UTC));
+        out.writeInt(value.getNano());
+    }
+
+    public static LocalDateTime readDateTime(ByteBuffer in) {
+        long epochSecond = in.getLong();
+        if (epochSecond == NULL_DATE) {
+            return null;
+        }
+        return LocalDateTime.ofEpochSecond(epochSecond, in.getInt(), ZoneOffset.UTC);
+    }
+
+    public static void writeBigDecimal(DataOutputStream out, BigDecimal value) throws IOException {
+        if (value == null) {
+            out.writeInt(NULL_LENGTH);
+            return;
+        }
+        byte[] unscaled = value.unscaledValue().toByteArray();
+        out.writeInt(unscaled.length);
+        out.write(unscaled);
+        out.writeInt(value.scale());
+    }
+
+    public static BigDecimal readBigDecimal(ByteBuffer in) {
+        int length = in.getInt();
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        byte[] unscaled = new byte[length];
+        in.get(unscaled);
+        return new BigDecimal(new BigInteger(unscaled), in.getInt());
+    }
+
+    /**
+     * Writes the length of a collection, or a marker for null
+     *
+     * @param out        snapshot stream
+     * @param collection collection or null
+     * @throws IOException if unable to write
+     */
+    public static void writeSize(DataOutputStream out, Collection<?> collection) throws IOException {
+        out.writeInt(collection == null ? NULL_LENGTH : collection.size());
+    }
+
+    /**
+     * Reads a collection length written by writeSize
+     *
+     * @param in buffer
+     * @return length, or -1 for null
+     */
+    public static int readSize(ByteBuffer in) {
+        return in.getInt();
+    }
+
+    private static final class MappedRecords<T> extends AbstractList<T> implements RandomAccess {
+        private final ByteBuffer buffer;
+        private final SnapshotCodec<T> codec;
+        private final int count;
+        private final int tableOffset;
+
+        private MappedRecords(ByteBuffer buffer, SnapshotCodec<T> codec, int count, int tableOffset) {
+            this.buffer = buffer;
+            this.codec = codec;
+            this.count = count;
+            this.tableOffset = tableOffset;
+        }
+
+        @Override
+        public T get(int index) {
+            if (index < 0 || index >= count) {
+                throw new IndexOutOfBoundsException(index);
+            }
+            ByteBuffer record = buffer.duplicate();
+            record.position(buffer.getInt(tableOffset + index * Integer.BYTES));
+            return codec.read(record);
+        }
+
+        @Override
+        public int size() {
+            return count;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package ee.fujitsu.movieapi.db.persistence;
+
+import ee.fujitsu.movieapi.db.model.movie.Movie;
+import ee.fujitsu.movieapi.db.model.order.Order;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Db file format of binary snapshots. Only record types with a snapshot codec can be stored,
+ * so it is not a DataValueFormat and single values such as the statistics are kept in another format.
+ */
+public class BinarySnapshotFormat implements DataFileFormat {
+    private static final Map<Class<?>, SnapshotCodec<?>> codecs = Map.of(
+            Movie.class, MovieSnapshotCodec.INSTANCE,
+            Order.class, OrderSnapshotCodec.INSTANCE);
+
+    @Override
+    public String getExtension() {
+        return BinarySnapshot.FILE_EXTENSION;
+    }
+
+    /**
+     * Maps the snapshot and decodes every record into the consumer, one at a time and in file order.
+     * No list of decoded records is built, but nothing is decoded lazily either.
+     */
+    @Override
+    public <T> int readRecords(File file, Class<T> type, Consumer<? super T> consumer) throws IOException {
+        List<T> records = BinarySnapshot.read(file, codec(type));
+        records.forEach(consumer);
+        return records.size();
+    }
+
+    @Override
+    public <T> void writeRecords(File target, Class<T> type, Collection<? extends T> records) throws IOException {
+        BinarySnapshot.write(target, codec(type), records);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> SnapshotCodec<T> codec(Class<T> type) {
+        SnapshotCodec<T> codec = (SnapshotCodec<T>) codecs.get(type);
+        if (codec == null) {
+            throw new IllegalArgumentException("No snapshot codec for " + type.getSimpleName());
+        }
+        return codec;
+    }
+}
@@ -0,0 +1,43 @@
+package ee.fujitsu.movieapi.db.persistence;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.function.Consumer;
+
+/**
+ * On-disk encoding of the db files, chosen by the file extension through DataFileFormats.
+ * Movies and orders are stored as lists of records. Formats that can also hold a single value,
+ * such as the statistics, implement DataValueFormat as well.
+ */
+public interface DataFileFormat {
+    /**
+     * Returns the file extension of the format, including the dot
+     *
+     * @return extension
+     */
+    String getExtension();
+
+    /**
+     * Reads the records of the file one at a time
+     *
+     * @param file     file holding a list of records
+     * @param type     record type
+     * @param consumer receives the records in file order
+     * @param <T>      record type
+     * @return number of records read
+     * @throws IOException if unable to read or decode
+     */
+    <T> int readRecords(File file, Class<T> type, Consumer<? super T> consumer) throws IOException;
+
+    /**
+     * Writes the records to a file that atomically replaces the target
+     *
+     * @param target  file to replace
+     * @param type    record type
+     * @param records records in the order they are read back
+     * @param <T>     record type
+     * @throws IOException if unable to write
+     */
+    <T> void writeRecords(File target, Class<T> type, Collection<? extends T> records) throws IOException;
+}
@@ -0,0 +1,119 @@
+package ee.fujitsu.movieapi.db.persistence;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+
+import java.io.File;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of the db file formats by file extension. json, yaml, smile, cbor and binary snapshots are
+ * registered by default for lists of records, all but binary snapshots for single values.
+ * Further formats can be added with register and registerValues before the repositories are initialized.
+ */
+public class DataFileFormats {
+    public static final JacksonFileFormat JSON = new JacksonFileFormat(".json", new ObjectMapper().findAndRegisterModules());
+    public static final JacksonFileFormat YAML = new JacksonFileFormat(".yaml",
+            new ObjectMapper(new YAMLFactory()).findAndRegisterModules());
+    public static final JacksonFileFormat SMILE = new JacksonFileFormat(".smile",
+            new ObjectMapper(new SmileFactory()).findAndRegisterModules());
+    public static final JacksonFileFormat CBOR = new JacksonFileFormat(".cbor",
+            new ObjectMapper(new CBORFactory()).findAndRegisterModules());
+    public static final DataFileFormat BINARY = new BinarySnapshotFormat();
+    private static final Map<String, DataFileFormat> formats = new ConcurrentHashMap<>();
+    private static final Map<String, DataValueFormat> valueFormats = new ConcurrentHashMap<>();
+
+    static {
+        register(JSON);
+        register(YAML);
+        register(SMILE);
+        register(CBOR);
+        register(BINARY);
+        registerValues(JSON);
+        registerValues(YAML);
+        registerValues(SMILE);
+        registerValues(CBOR);
+    }
+
+    /**
+     * Registers a format under its extension, replacing any format registered for it
+     *
+     * @param format format to register
+     */
+    public static void register(DataFileFormat format) {
+        formats.put(format.getExtension(), format);
+    }
+
+    /**
+     * Registers a single value format under its extension, replacing any format registered for it
+     *
+     * @param format format to register
+     */
+    public static void registerValues(DataValueFormat format) {
+        valueFormats.put(format.getExtension(), format);
+    }
+
+    /**
+     * Finds the format of a file extension
+     *
+     * @param extension extension including the dot, e.g. .json
+     * @return format
+     * @throws IllegalArgumentException if no format is registered for the extension
+     */
+    public static DataFileFormat forExtension(String extension) {
+        DataFileFormat format = formats.get(extension);
+        if (format == null) {
+            throw new IllegalArgumentException("Unsupported db file extension " + extension
+                    + ", supported are " + formats.keySet());
+        }
+        return format;
+    }
+
+    /**
+     * Finds the format of a file by its extension
+     *
+     * @param file file
+     * @return format
+     * @throws IllegalArgumentException if no format is registered for the extension
+     */
+    public static DataFileFormat forFile(File file) {
+        return forExtension(extensionOf(file));
+    }
+
+    /**
+     * Finds the format to keep single values such as the statistics in. Extensions without a single value
+     * format, whose files only hold lists of records, keep them as json.
+     *
+     * @param extension configured extension
+     * @return format
+     */
+    public static DataValueFormat forValues(String extension) {
+        return valueFormats.getOrDefault(extension, JSON);
+    }
+
+    /**
+     * Finds the single value format of a file by its extension
+     *
+     * @param file file
+     * @return format
+     * @throws IllegalArgumentException if no single value format is registered for the extension
+     */
+    public static DataValueFormat forValueFile(File file) {
+        String extension = extensionOf(file);
+        DataValueFormat format = valueFormats.get(extension);
+        if (format == null) {
+            throw new IllegalArgumentException("Single values cannot be kept in " + extension
+                    + " files, supported are " + valueFormats.keySet());
+        }
+        return format;
+    }
+
+    private static String extensionOf(File file) {
+        String name = file.getName();
+        int dot = name.lastIndexOf('.');
+        return dot < 0 ? "" : name.substring(dot);
+    }
+}
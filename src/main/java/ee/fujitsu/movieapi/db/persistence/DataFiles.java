@@ -0,0 +1,49 @@
+package ee.fujitsu.movieapi.db.persistence;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+public class DataFiles {
+    /**
+     * Serializes the value into a temporary file, syncs it to disk and moves it over the target,
+     * so a crash never leaves a half written database file behind.
+     *
+     * @param target file to replace
+     * @param writer writer for the target file format, leaving the stream open avoids reconfiguring it on every call
+     * @param value  value to write
+     * @throws IOException if unable to write
+     */
+    public static void writeAtomically(File target, ObjectWriter writer, Object value) throws IOException {
+        ObjectWriter streamWriter = writer.without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        writeAtomically(target, out -> streamWriter.writeValue(out, value));
+    }
+
+    /**
+     * Lets the writer fill a temporary file, syncs it to disk and moves it over the target
+     *
+     * @param target file to replace
+     * @param writer writes the file content, it must not close the stream
+     * @throws IOException if unable to write
+     */
+    public static void writeAtomically(File target, ContentWriter writer) throws IOException {
+        File tempFile = new File(target.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tempFile)) {
+            writer.write(out);
+            out.getFD().sync();
+        }
+        Files.move(tempFile.toPath(), target.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @FunctionalInterface
+    public interface ContentWriter {
+        void write(OutputStream out) throws IOException;
+    }
+}
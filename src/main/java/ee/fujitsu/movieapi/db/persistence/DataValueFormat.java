@@ -0,0 +1,37 @@
+package ee.fujitsu.movieapi.db.persistence;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * On-disk encoding of a db file holding a single value, such as the statistics.
+ * Found by the file extension through DataFileFormats.forValues.
+ */
+public interface DataValueFormat {
+    /**
+     * Returns the file extension of the format, including the dot
+     *
+     * @return extension
+     */
+    String getExtension();
+
+    /**
+     * Reads a single value
+     *
+     * @param file file holding the value
+     * @param type value type
+     * @param <T>  value type
+     * @return value, or null if the file holds none
+     * @throws IOException if unable to read or decode
+     */
+    <T> T readValue(File file, Class<T> type) throws IOException;
+
+    /**
+     * Writes a single value to a file that atomically replaces the target
+     *
+     * @param target file to replace
+     * @param value  value to write
+     * @throws IOException if unable to write
+     */
+    void writeValue(File target, Object value) throws IOException;
+}
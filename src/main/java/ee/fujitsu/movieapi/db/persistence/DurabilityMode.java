@@ -0,0 +1,12 @@
+package ee.fujitsu.movieapi.db.persistence;
+
+public enum DurabilityMode {
+    /**
+     * Every change is written and synced to disk by the request thread itself
+     */
+    SYNC,
+    /**
+     * Changes arriving within the commit window are written and synced together by a single writer thread
+     */
+    BATCHED
+}
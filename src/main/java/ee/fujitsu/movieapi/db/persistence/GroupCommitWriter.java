@@ -0,0 +1,164 @@
+package ee.fujitsu.movieapi.db.persistence;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Persists changes in groups. In BATCHED mode the changes submitted within the commit window
+ * are handed to the persister in one call by a dedicated writer thread, and every submitting
+ * thread is released only after its batch has been written. In SYNC mode each change is
+ * persisted by the submitting thread. Either way calls to the persister never overlap.
+ *
+ * @param <T> type of the change
+ */
+public class GroupCommitWriter<T> implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(GroupCommitWriter.class);
+    private static final long IDLE_POLL_MS = 100;
+
+    @FunctionalInterface
+    public interface BatchPersister<T> {
+        void persist(List<T> batch) throws IOException;
+    }
+
+    private static class PendingChange<T> {
+        private final T change;
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        private PendingChange(T change) {
+            this.change = change;
+        }
+    }
+
+    private final BatchPersister<T> persister;
+    private final DurabilityMode durabilityMode;
+    private final long commitWindowNanos;
+    private final int maxBatch;
+    private final BlockingQueue<PendingChange<T>> queue = new LinkedBlockingQueue<>();
+    private final Thread writerThread;
+    private volatile boolean running = true;
+
+    public GroupCommitWriter(String name, BatchPersister<T> persister, DurabilityMode durabilityMode,
+                             long commitWindowMs, int maxBatch) {
+        this.persister = persister;
+        this.durabilityMode = durabilityMode;
+        this.commitWindowNanos = TimeUnit.MILLISECONDS.toNanos(commitWindowMs);
+        this.maxBatch = Math.max(1, maxBatch);
+        if (durabilityMode == DurabilityMode.BATCHED) {
+            this.writerThread = new Thread(this::writeLoop, name + "-writer");
+            this.writerThread.setDaemon(true);
+            this.writerThread.start();
+        } else {
+            this.writerThread = null;
+        }
+    }
+
+    /**
+     * Persists the change and waits until it is on disk
+     *
+     * @param change change to persist
+     * @throws IOException if the batch containing the change could not be written
+     */
+    public void commit(T change) throws IOException {
+        if (durabilityMode == DurabilityMode.SYNC || !running) {
+            persist(List.of(change));
+            return;
+        }
+        PendingChange<T> pending = new PendingChange<>(change);
+        queue.add(pending);
+        if (!running && queue.remove(pending)) {
+            // The writer thread was stopped meanwhile and may have drained the queue already
+            persist(List.of(change));
+            return;
+        }
+        try {
+            pending.done.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for commit");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Stops the writer thread after writing everything that is still queued. The thread is not interrupted,
+     * as an interrupt during a write would close the file channel of the persister.
+     */
+    @Override
+    public void close() {
+        running = false;
+        if (writerThread != null) {
+            try {
+                writerThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private synchronized void persist(List<T> batch) throws IOException {
+        persister.persist(batch);
+    }
+
+    private void writeLoop() {
+        List<PendingChange<T>> batch = new ArrayList<>();
+        while (running) {
+            try {
+                collectBatch(batch);
+            } catch (InterruptedException e) {
+                // Only close() stops the writer, the interrupt status is cleared so that writes can go on
+                logger.warn("Writer thread " + Thread.currentThread().getName() + " was interrupted");
+            }
+            if (!batch.isEmpty()) {
+                writeBatch(batch);
+                batch.clear();
+            }
+        }
+        queue.drainTo(batch);
+        if (!batch.isEmpty()) {
+            writeBatch(batch);
+        }
+    }
+
+    /**
+     * Waits for the first change at most IDLE_POLL_MS, so that the loop notices close(),
+     * then collects the changes arriving within the commit window
+     */
+    private void collectBatch(List<PendingChange<T>> batch) throws InterruptedException {
+        PendingChange<T> first = queue.poll(IDLE_POLL_MS, TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return;
+        }
+        batch.add(first);
+        long deadline = System.nanoTime() + commitWindowNanos;
+        while (batch.size() < maxBatch) {
+            PendingChange<T> next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            if (next == null) {
+                break;
+            }
+            batch.add(next);
+        }
+    }
+
+    private void writeBatch(List<PendingChange<T>> batch) {
+        List<T> changes = new ArrayList<>(batch.size());
+        batch.forEach(pending -> changes.add(pending.change));
+        try {
+            persist(changes);
+            batch.forEach(pending -> pending.done.complete(null));
+        } catch (IOException | RuntimeException e) {
+            logger.error("Unable to persist a batch of " + batch.size() + " changes", e);
+            batch.forEach(pending -> pending.done.completeExceptionally(e));
+        }
+    }
+}
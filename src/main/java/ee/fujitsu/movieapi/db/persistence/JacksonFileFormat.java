@@ -0,0 +1,52 @@
+package ee.fujitsu.movieapi.db.persistence;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.function.Consumer;
+
+/**
+ * Db file format backed by a Jackson data format. Records are stored as an array and streamed on read.
+ * Readers and writers are built once per type.
+ */
+public class JacksonFileFormat implements DataFileFormat, DataValueFormat {
+    private final String extension;
+    private final TypedMapper mapper;
+
+    public JacksonFileFormat(String extension, ObjectMapper mapper) {
+        this.extension = extension;
+        this.mapper = new TypedMapper(mapper);
+    }
+
+    @Override
+    public String getExtension() {
+        return extension;
+    }
+
+    @Override
+    public <T> int readRecords(File file, Class<T> type, Consumer<? super T> consumer) throws IOException {
+        return StreamingRecordReader.readEach(file, mapper.readerFor(type), consumer);
+    }
+
+    @Override
+    public <T> void writeRecords(File target, Class<T> type, Collection<? extends T> records) throws IOException {
+        DataFiles.writeAtomically(target, mapper.collectionWriterFor(type), records);
+    }
+
+    @Override
+    public <T> T readValue(File file, Class<T> type) throws IOException {
+        if (file.length() == 0) {
+            return null;
+        }
+        ObjectReader reader = mapper.readerFor(type);
+        return reader.readValue(file);
+    }
+
+    @Override
+    public void writeValue(File target, Object value) throws IOException {
+        DataFiles.writeAtomically(target, mapper.writerFor(value.getClass()), value);
+    }
+}
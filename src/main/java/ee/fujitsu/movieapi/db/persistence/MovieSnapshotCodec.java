@@ -0,0 +1,97 @@
+package ee.fujitsu.movieapi.db.persistence;
+
+import ee.fujitsu.movieapi.db.model.movie.Movie;
+import ee.fujitsu.movieapi.db.model.movie.MovieMetadata;
+import ee.fujitsu.movieapi.db.model.movie.MovieRating;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import static ee.fujitsu.movieapi.db.persistence.BinarySnapshot.*;
+
+/**
+ * Binary snapshot codec of movies. Price class and price are derived from the release date when movies are loaded,
+ * so they are not stored.
+ */
+public class MovieSnapshotCodec implements SnapshotCodec<Movie> {
+    public static final MovieSnapshotCodec INSTANCE = new MovieSnapshotCodec();
+    private static final byte KIND = 1;
+
+    @Override
+    public byte getKind() {
+        return KIND;
+    }
+
+    @Override
+    public void write(DataOutputStream out, Movie movie) throws IOException {
+        writeString(out, movie.getImdbId());
+        writeString(out, movie.getTitle());
+        writeDate(out, movie.getReleaseDate());
+        writeSize(out, movie.getCategories());
+        if (movie.getCategories() != null) {
+            for (String category : movie.getCategories()) {
+                writeString(out, category);
+            }
+        }
+        MovieMetadata metadata = movie.getMovieMetadata();
+        out.writeBoolean(metadata != null);
+        if (metadata != null) {
+            out.writeBoolean(metadata.getDataFound());
+            writeString(out, metadata.getRated());
+            writeString(out, metadata.getRuntime());
+            writeString(out, metadata.getDirector());
+            writeString(out, metadata.getWriter());
+            writeString(out, metadata.getActors());
+            writeSize(out, metadata.getRatings());
+            if (metadata.getRatings() != null) {
+                for (MovieRating rating : metadata.getRatings()) {
+                    writeString(out, rating.getSource());
+                    writeString(out, rating.getValue());
+                }
+            }
+        }
+    }
+
+    @Override
+    public Movie read(ByteBuffer in) {
+        Movie movie = new Movie();
+        movie.setImdbId(readString(in));
+        movie.setTitle(readString(in));
+        movie.setReleaseDate(readDate(in));
+        int categoryCount = readSize(in);
+        if (categoryCount >= 0) {
+            Set<String> categories = new LinkedHashSet<>();
+            for (int i = 0; i < categoryCount; i++) {
+                categories.add(readString(in));
+            }
+            movie.setCategories(categories);
+        }
+        if (in.get() != 0) {
+            MovieMetadata metadata = new MovieMetadata();
+            metadata.setDataFound(in.get() != 0);
+            metadata.setRated(readString(in));
+            metadata.setRuntime(readString(in));
+            metadata.setDirector(readString(in));
+            metadata.setWriter(readString(in));
+            metadata.setActors(readString(in));
+            int ratingCount = readSize(in);
+            if (ratingCount >= 0) {
+                List<MovieRating> ratings = new ArrayList<>(ratingCount);
+                for (int i = 0; i < ratingCount; i++) {
+                    MovieRating rating = new MovieRating();
+                    rating.setSource(readString(in));
+                    rating.setValue(readString(in));
+                    ratings.add(rating);
+                }
+                metadata.setRatings(ratings);
+            }
+            movie.setMovieMetadata(metadata);
+        }
+        return movie;
+    }
+}
@@ -0,0 +1,180 @@
+package ee.fujitsu.movieapi.db.persistence;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import ee.fujitsu.movieapi.db.model.order.Order;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of order changes. Every record is framed as
+ * [payload length][crc32][record type][payload], so a record torn by a crash is detected
+ * on replay and cut off instead of breaking the whole log.
+ */
+public class OrderLog implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(OrderLog.class);
+    private static final int HEADER_SIZE = Integer.BYTES + Integer.BYTES + 1;
+    private static final OrderLogRecordType[] TYPES = OrderLogRecordType.values();
+
+    private final File file;
+    private final ObjectWriter orderWriter;
+    private final ObjectReader orderReader;
+    private FileChannel channel;
+    private int recordCount;
+
+    public OrderLog(File file, ObjectMapper mapper) {
+        this.file = file;
+        this.orderWriter = mapper.writerFor(Order.class);
+        this.orderReader = mapper.readerFor(Order.class);
+    }
+
+    /**
+     * Opens the log file for appending, creating it if needed. A channel that was closed,
+     * for example by an interrupt during a write, is opened again.
+     * @throws IOException if unable to open
+     */
+    public synchronized void open() throws IOException {
+        if (channel == null || !channel.isOpen()) {
+            channel = FileChannel.open(file.toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            channel.position(channel.size());
+        }
+    }
+
+    /**
+     * Appends one record to the end of the log
+     * @param record record to append
+     * @throws IOException if unable to write
+     */
+    public void append(OrderLogRecord record) throws IOException {
+        append(List.of(record));
+    }
+
+    /**
+     * Appends records to the end of the log in a single write
+     * @param records records to append, in order
+     * @throws IOException if unable to write
+     */
+    public synchronized void append(List<OrderLogRecord> records) throws IOException {
+        open();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        for (OrderLogRecord record : records) {
+            bytes.write(frame(record));
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        channel.force(false);
+        recordCount += records.size();
+    }
+
+    /**
+     * Applies every record of the log to the given orders, in the order they were written.
+     * Replaying is idempotent, so records that are already part of the snapshot do no harm.
+     * A torn or corrupted tail is truncated.
+     *
+     * @param orders orders from the last snapshot, keyed by orderId
+     * @return number of replayed records
+     * @throws IOException if unable to read
+     */
+    public synchronized int replay(Map<String, Order> orders) throws IOException {
+        open();
+        long validLength = 0;
+        int replayed = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                int checksum = in.readInt();
+                byte type = in.readByte();
+                if (length < 0 || type < 0 || type >= TYPES.length) {
+                    throw new StreamCorruptedException("Invalid record header");
+                }
+                byte[] payload = in.readNBytes(length);
+                if (payload.length < length || checksum != checksum(type, payload)) {
+                    throw new StreamCorruptedException("Invalid record payload");
+                }
+                apply(TYPES[type], payload, orders);
+                validLength += HEADER_SIZE + length;
+                replayed++;
+            }
+        } catch (EOFException | StreamCorruptedException e) {
+            logger.warn("Order log " + file + " has a damaged tail after " + replayed + " records, truncating");
+        }
+        channel.truncate(validLength);
+        channel.position(validLength);
+        recordCount = replayed;
+        return replayed;
+    }
+
+    /**
+     * Empties the log. Called after the orders have been written to a fresh snapshot.
+     * @throws IOException if unable to truncate
+     */
+    public synchronized void truncate() throws IOException {
+        open();
+        channel.truncate(0);
+        channel.position(0);
+        recordCount = 0;
+    }
+
+    /**
+     * Returns the number of records written since the last truncation
+     * @return record count
+     */
+    public synchronized int getRecordCount() {
+        return recordCount;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    private byte[] frame(OrderLogRecord record) throws IOException {
+        byte type = (byte) record.getType().ordinal();
+        byte[] payload = record.getType().hasOrderPayload()
+                ? orderWriter.writeValueAsBytes(record.getOrder())
+                : record.getOrderId().getBytes(StandardCharsets.UTF_8);
+        return ByteBuffer.allocate(HEADER_SIZE + payload.length)
+                .putInt(payload.length)
+                .putInt(checksum(type, payload))
+                .put(type)
+                .put(payload)
+                .array();
+    }
+
+    private void apply(OrderLogRecordType type, byte[] payload, Map<String, Order> orders) throws IOException {
+        if (type.hasOrderPayload()) {
+            Order order = orderReader.readValue(payload);
+            orders.put(order.getOrderId(), order);
+        } else {
+            orders.remove(new String(payload, StandardCharsets.UTF_8));
+        }
+    }
+
+    private static int checksum(byte type, byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(type);
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+}
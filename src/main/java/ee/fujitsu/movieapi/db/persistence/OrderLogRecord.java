@@ -0,0 +1,39 @@
+package ee.fujitsu.movieapi.db.persistence;
+
+import ee.fujitsu.movieapi.db.model.order.Order;
+
+/**
+ * Single entry of the order log. Create, extend and checkout records carry the whole order,
+ * delete records only carry the order id.
+ */
+public class OrderLogRecord {
+    private final OrderLogRecordType type;
+    private final String orderId;
+    private final Order order;
+
+    private OrderLogRecord(OrderLogRecordType type, String orderId, Order order) {
+        this.type = type;
+        this.orderId = orderId;
+        this.order = order;
+    }
+
+    public static OrderLogRecord of(OrderLogRecordType type, Order order) {
+        return new OrderLogRecord(type, order.getOrderId(), order);
+    }
+
+    public static OrderLogRecord delete(String orderId) {
+        return new OrderLogRecord(OrderLogRecordType.DELETE, orderId, null);
+    }
+
+    public OrderLogRecordType getType() {
+        return type;
+    }
+
+    public String getOrderId() {
+        return orderId;
+    }
+
+    public Order getOrder() {
+        return order;
+    }
+}
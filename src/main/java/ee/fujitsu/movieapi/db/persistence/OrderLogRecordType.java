@@ -0,0 +1,16 @@
+package ee.fujitsu.movieapi.db.persistence;
+
+public enum OrderLogRecordType {
+    CREATE,
+    EXTEND,
+    CHECKOUT,
+    DELETE;
+
+    /**
+     * Whether records of this type carry the full order state
+     * @return true for every type except DELETE
+     */
+    public boolean hasOrderPayload() {
+        return this != DELETE;
+    }
+}
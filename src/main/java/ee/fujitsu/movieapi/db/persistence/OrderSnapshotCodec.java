@@ -0,0 +1,74 @@
+package ee.fujitsu.movieapi.db.persistence;
+
+import ee.fujitsu.movieapi.db.model.order.Order;
+import ee.fujitsu.movieapi.db.model.order.OrderItem;
+import ee.fujitsu.movieapi.db.model.order.OrderStatus;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static ee.fujitsu.movieapi.db.persistence.BinarySnapshot.*;
+
+/**
+ * Binary snapshot codec of orders
+ */
+public class OrderSnapshotCodec implements SnapshotCodec<Order> {
+    public static final OrderSnapshotCodec INSTANCE = new OrderSnapshotCodec();
+    private static final byte KIND = 2;
+    private static final OrderStatus[] STATUSES = OrderStatus.values();
+
+    @Override
+    public byte getKind() {
+        return KIND;
+    }
+
+    @Override
+    public void write(DataOutputStream out, Order order) throws IOException {
+        writeString(out, order.getOrderId());
+        writeDateTime(out, order.getTimestamp());
+        out.writeByte(order.getOrderStatus() == null ? -1 : order.getOrderStatus().ordinal());
+        writeBigDecimal(out, order.getTotalPrice());
+        out.writeLong(order.getVersion());
+        writeSize(out, order.getOrderItemList());
+        if (order.getOrderItemList() != null) {
+            for (OrderItem item : order.getOrderItemList()) {
+                writeString(out, item.getMovieId());
+                writeDate(out, item.getMovieReleaseDate());
+                out.writeInt(item.getRentDurationInWeeks());
+                writeBigDecimal(out, item.getCurrentPricePerWeek());
+                writeBigDecimal(out, item.getTotalPrice());
+            }
+        }
+    }
+
+    @Override
+    public Order read(ByteBuffer in) {
+        Order order = new Order();
+        order.setOrderId(readString(in));
+        order.setTimestamp(readDateTime(in));
+        byte status = in.get();
+        order.setOrderStatus(status < 0 ? null : STATUSES[status]);
+        order.setTotalPrice(readBigDecimal(in));
+        order.setVersion(in.getLong());
+        int itemCount = readSize(in);
+        if (itemCount >= 0) {
+            List<OrderItem> items = new ArrayList<>(itemCount);
+            for (int i = 0; i < itemCount; i++) {
+                OrderItem item = new OrderItem();
+                item.setMovieId(readString(in));
+                item.setMovieReleaseDate(readDate(in));
+                item.setRentDurationInWeeks(in.getInt());
+                item.setCurrentPricePerWeek(readBigDecimal(in));
+                item.setTotalPrice(readBigDecimal(in));
+                items.add(item);
+            }
+            order.setOrderItemList(items);
+        } else {
+            order.setOrderItemList(null);
+        }
+        return order;
+    }
+}
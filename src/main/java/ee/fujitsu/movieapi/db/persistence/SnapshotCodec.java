@@ -0,0 +1,36 @@
+package ee.fujitsu.movieapi.db.persistence;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes one kind of records of a binary snapshot
+ *
+ * @param <T> record type
+ */
+public interface SnapshotCodec<T> {
+    /**
+     * Returns the record kind stored in the snapshot header, so that a snapshot is never read as another kind
+     *
+     * @return kind
+     */
+    byte getKind();
+
+    /**
+     * Writes one record
+     *
+     * @param out    snapshot stream
+     * @param record record to write
+     * @throws IOException if unable to write
+     */
+    void write(DataOutputStream out, T record) throws IOException;
+
+    /**
+     * Decodes one record starting at the position of the buffer
+     *
+     * @param in buffer positioned at the record
+     * @return record
+     */
+    T read(ByteBuffer in);
+}
@@ -0,0 +1,68 @@
+package ee.fujitsu.movieapi.db.persistence;
+
+import ee.fujitsu.movieapi.db.model.movie.Movie;
+import ee.fujitsu.movieapi.db.model.order.Order;
+import ee.fujitsu.movieapi.db.model.statistics.OrderStatistics;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Converts movie, order and statistics databases between the registered db file formats
+ * (json, yaml, smile, cbor and binary snapshots). The format of each file is chosen by its extension.
+ * The order log is not part of the conversion, it is replayed on top of the converted snapshot at startup,
+ * whatever the format. Statistics cannot be stored in binary snapshots.
+ * <p>
+ * Usage: SnapshotConverter movies|orders|statistics &lt;source file&gt; &lt;target file&gt;
+ */
+public class SnapshotConverter {
+    private static final String USAGE = "Usage: SnapshotConverter movies|orders|statistics <source file> <target file>";
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3) {
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+        long start = System.nanoTime();
+        int count = convert(args[0], new File(args[1]), new File(args[2]));
+        System.out.println("Converted " + count + " " + args[0] + " from " + args[1] + " to " + args[2]
+                + " in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+
+    /**
+     * Converts a database file
+     *
+     * @param kind   movies, orders or statistics
+     * @param source file to read
+     * @param target file to write, replaced atomically
+     * @return number of converted records, 1 for statistics
+     * @throws IOException if unable to read or write
+     * @throws IllegalArgumentException if the kind or a file extension is not supported
+     */
+    public static int convert(String kind, File source, File target) throws IOException {
+        switch (kind) {
+            case "movies":
+                return convertRecords(source, target, Movie.class);
+            case "orders":
+                return convertRecords(source, target, Order.class);
+            case "statistics":
+                DataValueFormat sourceFormat = DataFileFormats.forValueFile(source);
+                DataValueFormat targetFormat = DataFileFormats.forValueFile(target);
+                targetFormat.writeValue(target, sourceFormat.readValue(source, OrderStatistics.class));
+                return 1;
+            default:
+                throw new IllegalArgumentException(USAGE);
+        }
+    }
+
+    private static <T> int convertRecords(File source, File target, Class<T> type) throws IOException {
+        DataFileFormat sourceFormat = DataFileFormats.forFile(source);
+        DataFileFormat targetFormat = DataFileFormats.forFile(target);
+        List<T> records = new ArrayList<>();
+        sourceFormat.readRecords(source, type, records::add);
+        targetFormat.writeRecords(target, type, records);
+        return records.size();
+    }
+}
@@ -0,0 +1,93 @@
+package ee.fujitsu.movieapi.db.persistence;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.util.function.Consumer;
+
+/**
+ * Reads the records of a json or yaml array file one at a time, so that only the record being parsed
+ * and the records already handed to the consumer are in memory. Progress of large files is logged
+ * every tenth of the file.
+ */
+public class StreamingRecordReader {
+    private static final Logger logger = LoggerFactory.getLogger(StreamingRecordReader.class);
+    /**
+     * Files smaller than this are loaded without progress reports
+     */
+    public static final long PROGRESS_MIN_BYTES = 16 * 1024 * 1024;
+    private static final int PROGRESS_STEPS = 10;
+
+    /**
+     * Parses the array in the file and hands every record to the consumer as soon as it is parsed
+     *
+     * @param file     json or yaml file holding an array of records, an empty document holds no records
+     * @param reader   reader of the record type for the file format
+     * @param consumer receives the records in file order
+     * @param <T>      record type
+     * @return number of records read
+     * @throws IOException if unable to read or parse
+     */
+    public static <T> int readEach(File file, ObjectReader reader, Consumer<? super T> consumer)
+            throws IOException {
+        long start = System.nanoTime();
+        long length = file.length();
+        int count = 0;
+        try (CountingInputStream in = new CountingInputStream(new FileInputStream(file));
+             MappingIterator<T> records = reader.readValues(in)) {
+            long nextReport = length / PROGRESS_STEPS;
+            while (records.hasNextValue()) {
+                consumer.accept(records.nextValue());
+                count++;
+                if (length >= PROGRESS_MIN_BYTES && in.getCount() >= nextReport) {
+                    logger.info("Loading " + file.getName() + ": " + in.getCount() * 100 / length + "% ("
+                            + count + " records)");
+                    nextReport = in.getCount() + length / PROGRESS_STEPS;
+                }
+            }
+        }
+        logger.info("Loaded " + count + " records from " + file.getName() + " in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+        return count;
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+        private long count;
+
+        private CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        long getCount() {
+            return count;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+}
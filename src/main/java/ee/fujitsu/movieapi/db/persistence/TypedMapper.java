@@ -0,0 +1,59 @@
+package ee.fujitsu.movieapi.db.persistence;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Hands out readers and writers of a mapper that are built once per type and shared. Readers and writers
+ * are immutable and thread-safe; one bound to a root type resolves its (de)serializer once instead of
+ * looking it up on every call. Writers leave the target stream open, as DataFiles needs it for syncing.
+ */
+public class TypedMapper {
+    private final ObjectMapper mapper;
+    private final Map<Class<?>, ObjectReader> readers = new ConcurrentHashMap<>();
+    private final Map<Class<?>, ObjectWriter> writers = new ConcurrentHashMap<>();
+    private final Map<Class<?>, ObjectWriter> collectionWriters = new ConcurrentHashMap<>();
+
+    public TypedMapper(ObjectMapper mapper) {
+        this.mapper = mapper;
+    }
+
+    /**
+     * Returns the reader of values, or of streamed records, of the type
+     *
+     * @param type value type
+     * @return shared reader
+     */
+    public ObjectReader readerFor(Class<?> type) {
+        return readers.computeIfAbsent(type, mapper::readerFor);
+    }
+
+    /**
+     * Returns the writer of values of the type
+     *
+     * @param type value type
+     * @return shared writer
+     */
+    public ObjectWriter writerFor(Class<?> type) {
+        return writers.computeIfAbsent(type, key -> mapper.writerFor(key)
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET));
+    }
+
+    /**
+     * Returns the writer of collections of records of the type, written as an array
+     *
+     * @param type record type
+     * @return shared writer
+     */
+    public ObjectWriter collectionWriterFor(Class<?> type) {
+        return collectionWriters.computeIfAbsent(type, key -> mapper
+                .writerFor(mapper.getTypeFactory().constructCollectionType(Collection.class, key))
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET));
+    }
+}
@@ -0,0 +1,204 @@
+package ee.fujitsu.movieapi.db.repository;
+
+import ee.fujitsu.movieapi.db.model.movie.Movie;
+
+import java.util.*;
+
+/**
+ * Immutable, versioned snapshot of the movie catalog. Readers get a consistent view without locking;
+ * writers build the next version from the current one and publish it as a whole.
+ */
+public class MovieCatalog {
+    private final long version;
+    private final List<Movie> movies;
+    private final Map<String, Movie> moviesById;
+    private final NavigableMap<String, Movie> moviesInIdOrder;
+    private final MovieCategoryIndex categoryIndex;
+    private final MovieReleaseDateIndex releaseDateIndex;
+
+    private MovieCatalog(long version, List<Movie> movies, Map<String, Movie> moviesById,
+                         NavigableMap<String, Movie> moviesInIdOrder,
+                         MovieCategoryIndex categoryIndex, MovieReleaseDateIndex releaseDateIndex) {
+        this.version = version;
+        this.movies = Collections.unmodifiableList(movies);
+        this.moviesById = Collections.unmodifiableMap(moviesById);
+        this.moviesInIdOrder = Collections.unmodifiableNavigableMap(moviesInIdOrder);
+        this.categoryIndex = categoryIndex;
+        this.releaseDateIndex = releaseDateIndex;
+    }
+
+    /**
+     * Builds a catalog from scratch
+     *
+     * @param version catalog version
+     * @param movies  movies in catalog order
+     * @return catalog
+     */
+    public static MovieCatalog of(long version, Collection<Movie> movies) {
+        Map<String, Movie> moviesById = new HashMap<>();
+        movies.forEach(movie -> moviesById.put(movie.getImdbId(), movie));
+        return new MovieCatalog(version, new ArrayList<>(movies), moviesById, new TreeMap<>(moviesById),
+                MovieCategoryIndex.of(movies),
+                MovieReleaseDateIndex.of(movies));
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public List<Movie> getMovies() {
+        return movies;
+    }
+
+    public Map<String, Movie> getMoviesById() {
+        return moviesById;
+    }
+
+    /**
+     * Returns a page of movies in imdb id order
+     *
+     * @param afterId imdb id of the last movie of the previous page, or null for the first page
+     * @param limit   maximum number of movies
+     * @return movies with imdb id greater than afterId
+     */
+    public List<Movie> findPage(String afterId, int limit) {
+        Collection<Movie> tail = afterId == null ? moviesInIdOrder.values() : moviesInIdOrder.tailMap(afterId, false).values();
+        List<Movie> page = new ArrayList<>(Math.min(limit, moviesInIdOrder.size()));
+        for (Movie movie : tail) {
+            if (page.size() == limit) {
+                break;
+            }
+            page.add(movie);
+        }
+        return page;
+    }
+
+    public MovieCategoryIndex getCategoryIndex() {
+        return categoryIndex;
+    }
+
+    public MovieReleaseDateIndex getReleaseDateIndex() {
+        return releaseDateIndex;
+    }
+
+    /**
+     * Returns the next version of the catalog with the movie appended
+     *
+     * @param movie movie to add
+     * @return next catalog version
+     */
+    public MovieCatalog withMovie(Movie movie) {
+        List<Movie> nextMovies = new ArrayList<>(movies.size() + 1);
+        nextMovies.addAll(movies);
+        nextMovies.add(movie);
+        Map<String, Movie> nextById = new HashMap<>(moviesById);
+        nextById.put(movie.getImdbId(), movie);
+        NavigableMap<String, Movie> nextInIdOrder = new TreeMap<>(moviesInIdOrder);
+        nextInIdOrder.put(movie.getImdbId(), movie);
+        return new MovieCatalog(version + 1, nextMovies, nextById, nextInIdOrder, categoryIndex.withMovie(movie),
+                releaseDateIndex.withMovie(movie));
+    }
+
+    /**
+     * Returns the next version of the catalog with the movies appended at once.
+     * The movies must have imdb ids that are unique and not yet in the catalog.
+     *
+     * @param added movies to add
+     * @return next catalog version, or this catalog if there is nothing to add
+     */
+    public MovieCatalog withMovies(Collection<Movie> added) {
+        if (added.isEmpty()) {
+            return this;
+        }
+        List<Movie> nextMovies = new ArrayList<>(movies.size() + added.size());
+        nextMovies.addAll(movies);
+        nextMovies.addAll(added);
+        Map<String, Movie> nextById = new HashMap<>(moviesById);
+        NavigableMap<String, Movie> nextInIdOrder = new TreeMap<>(moviesInIdOrder);
+        for (Movie movie : added) {
+            nextById.put(movie.getImdbId(), movie);
+            nextInIdOrder.put(movie.getImdbId(), movie);
+        }
+        return new MovieCatalog(version + 1, nextMovies, nextById, nextInIdOrder, categoryIndex.withMovies(added),
+                releaseDateIndex.withMovies(added));
+    }
+
+    /**
+     * Returns the next version of the catalog without the movie
+     *
+     * @param movie movie of this catalog to remove
+     * @return next catalog version
+     */
+    public MovieCatalog withoutMovie(Movie movie) {
+        List<Movie> nextMovies = new ArrayList<>(movies.size());
+        for (Movie current : movies) {
+            if (current != movie) {
+                nextMovies.add(current);
+            }
+        }
+        Map<String, Movie> nextById = new HashMap<>(moviesById);
+        nextById.remove(movie.getImdbId(), movie);
+        NavigableMap<String, Movie> nextInIdOrder = new TreeMap<>(moviesInIdOrder);
+        nextInIdOrder.remove(movie.getImdbId(), movie);
+        return new MovieCatalog(version + 1, nextMovies, nextById, nextInIdOrder, categoryIndex.withoutMovie(movie),
+                releaseDateIndex.withoutMovie(movie));
+    }
+
+    /**
+     * Returns the next version of the catalog with the movie replaced in place
+     *
+     * @param replaced movie of this catalog to replace
+     * @param movie    replacement
+     * @return next catalog version
+     */
+    public MovieCatalog withReplacedMovie(Movie replaced, Movie movie) {
+        List<Movie> nextMovies = new ArrayList<>(movies.size());
+        for (Movie current : movies) {
+            nextMovies.add(current == replaced ? movie : current);
+        }
+        Map<String, Movie> nextById = new HashMap<>(moviesById);
+        nextById.remove(replaced.getImdbId(), replaced);
+        nextById.put(movie.getImdbId(), movie);
+        NavigableMap<String, Movie> nextInIdOrder = new TreeMap<>(moviesInIdOrder);
+        nextInIdOrder.remove(replaced.getImdbId(), replaced);
+        nextInIdOrder.put(movie.getImdbId(), movie);
+        return new MovieCatalog(version + 1, nextMovies, nextById, nextInIdOrder,
+                categoryIndex.withoutMovie(replaced).withMovie(movie),
+                releaseDateIndex.withoutMovie(replaced).withMovie(movie));
+    }
+
+    /**
+     * Returns the next version of the catalog with several movies replaced in place at once.
+     * The replacements must keep the imdb id of the movie they replace.
+     *
+     * @param replacementsById replacement movies by imdb id
+     * @return next catalog version, or this catalog if there is nothing to replace
+     */
+    public MovieCatalog withReplacedMovies(Map<String, Movie> replacementsById) {
+        if (replacementsById.isEmpty()) {
+            return this;
+        }
+        List<Movie> nextMovies = new ArrayList<>(movies.size());
+        for (Movie current : movies) {
+            nextMovies.add(replacementsById.getOrDefault(current.getImdbId(), current));
+        }
+        Map<String, Movie> nextById = new HashMap<>(moviesById);
+        NavigableMap<String, Movie> nextInIdOrder = new TreeMap<>(moviesInIdOrder);
+        MovieCategoryIndex nextCategoryIndex = categoryIndex;
+        MovieReleaseDateIndex nextReleaseDateIndex = releaseDateIndex;
+        for (Movie movie : replacementsById.values()) {
+            Movie replaced = moviesById.get(movie.getImdbId());
+            if (replaced == null) {
+                continue;
+            }
+            nextById.put(movie.getImdbId(), movie);
+            nextInIdOrder.put(movie.getImdbId(), movie);
+            nextCategoryIndex = nextCategoryIndex.withoutMovie(replaced);
+            nextReleaseDateIndex = nextReleaseDateIndex.withoutMovie(replaced);
+            nextCategoryIndex = nextCategoryIndex.withMovie(movie);
+            nextReleaseDateIndex = nextReleaseDateIndex.withMovie(movie);
+        }
+        return new MovieCatalog(version + 1, nextMovies, nextById, nextInIdOrder, nextCategoryIndex,
+                nextReleaseDateIndex);
+    }
+}
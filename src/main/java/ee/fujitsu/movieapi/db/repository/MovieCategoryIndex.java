@@ -0,0 +1,176 @@
+package ee.fujitsu.movieapi.db.repository;
+
+import ee.fujitsu.movieapi.db.model.movie.Movie;
+
+import java.util.*;
+
+/**
+ * Immutable inverted index from case folded category name to the ids of movies in that category.
+ * Changes return a new index that shares every category set it did not touch with this one.
+ */
+public class MovieCategoryIndex {
+    private static final MovieCategoryIndex EMPTY = new MovieCategoryIndex(Map.of());
+
+    private final Map<String, Set<String>> movieIdsByCategory;
+
+    private MovieCategoryIndex(Map<String, Set<String>> movieIdsByCategory) {
+        this.movieIdsByCategory = movieIdsByCategory;
+    }
+
+    public static MovieCategoryIndex empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Builds the index of the movies
+     *
+     * @param movies movies to index
+     * @return index
+     */
+    public static MovieCategoryIndex of(Collection<Movie> movies) {
+        Map<String, Set<String>> movieIdsByCategory = new HashMap<>();
+        for (Movie movie : movies) {
+            if (movie.getCategories() == null) {
+                continue;
+            }
+            for (String category : movie.getCategories()) {
+                movieIdsByCategory.computeIfAbsent(normalize(category), key -> new HashSet<>())
+                        .add(movie.getImdbId());
+            }
+        }
+        return new MovieCategoryIndex(movieIdsByCategory);
+    }
+
+    /**
+     * Normalizes category name, so that lookups are case insensitive
+     *
+     * @param category category name
+     * @return trimmed lower case category name
+     */
+    public static String normalize(String category) {
+        return category.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Returns an index that also contains the movie
+     *
+     * @param movie movie to add
+     * @return new index
+     */
+    public MovieCategoryIndex withMovie(Movie movie) {
+        if (movie.getCategories() == null || movie.getCategories().isEmpty()) {
+            return this;
+        }
+        Map<String, Set<String>> copy = new HashMap<>(movieIdsByCategory);
+        for (String category : movie.getCategories()) {
+            String key = normalize(category);
+            Set<String> ids = new HashSet<>(copy.getOrDefault(key, Set.of()));
+            ids.add(movie.getImdbId());
+            copy.put(key, ids);
+        }
+        return new MovieCategoryIndex(copy);
+    }
+
+    /**
+     * Returns an index that also contains the movies. Each touched category is copied once,
+     * so adding many movies costs the same as building their part of the index.
+     *
+     * @param movies movies to add
+     * @return new index
+     */
+    public MovieCategoryIndex withMovies(Collection<Movie> movies) {
+        Map<String, Set<String>> copy = new HashMap<>(movieIdsByCategory);
+        Set<String> copiedKeys = new HashSet<>();
+        for (Movie movie : movies) {
+            if (movie.getCategories() == null) {
+                continue;
+            }
+            for (String category : movie.getCategories()) {
+                String key = normalize(category);
+                if (copiedKeys.add(key)) {
+                    copy.put(key, new HashSet<>(copy.getOrDefault(key, Set.of())));
+                }
+                copy.get(key).add(movie.getImdbId());
+            }
+        }
+        return new MovieCategoryIndex(copy);
+    }
+
+    /**
+     * Returns an index that no longer contains the movie
+     *
+     * @param movie movie to remove
+     * @return new index
+     */
+    public MovieCategoryIndex withoutMovie(Movie movie) {
+        if (movie.getCategories() == null || movie.getCategories().isEmpty()) {
+            return this;
+        }
+        Map<String, Set<String>> copy = new HashMap<>(movieIdsByCategory);
+        for (String category : movie.getCategories()) {
+            String key = normalize(category);
+            Set<String> ids = copy.get(key);
+            if (ids == null) {
+                continue;
+            }
+            ids = new HashSet<>(ids);
+            ids.remove(movie.getImdbId());
+            if (ids.isEmpty()) {
+                copy.remove(key);
+            } else {
+                copy.put(key, ids);
+            }
+        }
+        return new MovieCategoryIndex(copy);
+    }
+
+    /**
+     * Returns ids of movies in the category
+     *
+     * @param category category name in any case
+     * @return unmodifiable set of movie ids
+     */
+    public Set<String> find(String category) {
+        return Collections.unmodifiableSet(movieIdsByCategory.getOrDefault(normalize(category), Set.of()));
+    }
+
+    /**
+     * Returns ids of movies that are in every one of the categories
+     *
+     * @param categories category names
+     * @return movie ids
+     */
+    public Set<String> findAll(Collection<String> categories) {
+        List<Set<String>> sets = new ArrayList<>();
+        for (String category : categories) {
+            Set<String> ids = find(category);
+            if (ids.isEmpty()) {
+                return Set.of();
+            }
+            sets.add(ids);
+        }
+        if (sets.isEmpty()) {
+            return Set.of();
+        }
+        sets.sort(Comparator.comparingInt(Set::size));
+        Set<String> result = new LinkedHashSet<>(sets.get(0));
+        for (Set<String> ids : sets.subList(1, sets.size())) {
+            result.retainAll(ids);
+        }
+        return result;
+    }
+
+    /**
+     * Returns ids of movies that are in at least one of the categories
+     *
+     * @param categories category names
+     * @return movie ids
+     */
+    public Set<String> findAny(Collection<String> categories) {
+        Set<String> result = new LinkedHashSet<>();
+        for (String category : categories) {
+            result.addAll(find(category));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,112 @@
+package ee.fujitsu.movieapi.db.repository;
+
+import ee.fujitsu.movieapi.db.model.movie.Movie;
+
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Immutable index from release date to the ids of movies released on that date, sorted by date.
+ * Used to find the movies whose price class changes on a given day without scanning the catalog.
+ */
+public class MovieReleaseDateIndex {
+    private final NavigableMap<LocalDate, Set<String>> movieIdsByReleaseDate;
+
+    private MovieReleaseDateIndex(NavigableMap<LocalDate, Set<String>> movieIdsByReleaseDate) {
+        this.movieIdsByReleaseDate = movieIdsByReleaseDate;
+    }
+
+    /**
+     * Builds the index of the movies
+     *
+     * @param movies movies to index
+     * @return index
+     */
+    public static MovieReleaseDateIndex of(Collection<Movie> movies) {
+        NavigableMap<LocalDate, Set<String>> movieIdsByReleaseDate = new TreeMap<>();
+        for (Movie movie : movies) {
+            if (movie.getReleaseDate() != null) {
+                movieIdsByReleaseDate.computeIfAbsent(movie.getReleaseDate(), key -> new HashSet<>())
+                        .add(movie.getImdbId());
+            }
+        }
+        return new MovieReleaseDateIndex(movieIdsByReleaseDate);
+    }
+
+    /**
+     * Returns an index that also contains the movie
+     *
+     * @param movie movie to add
+     * @return new index
+     */
+    public MovieReleaseDateIndex withMovie(Movie movie) {
+        if (movie.getReleaseDate() == null) {
+            return this;
+        }
+        NavigableMap<LocalDate, Set<String>> copy = new TreeMap<>(movieIdsByReleaseDate);
+        Set<String> ids = new HashSet<>(copy.getOrDefault(movie.getReleaseDate(), Set.of()));
+        ids.add(movie.getImdbId());
+        copy.put(movie.getReleaseDate(), ids);
+        return new MovieReleaseDateIndex(copy);
+    }
+
+    /**
+     * Returns an index that also contains the movies. Each touched release date is copied once.
+     *
+     * @param movies movies to add
+     * @return new index
+     */
+    public MovieReleaseDateIndex withMovies(Collection<Movie> movies) {
+        NavigableMap<LocalDate, Set<String>> copy = new TreeMap<>(movieIdsByReleaseDate);
+        Set<LocalDate> copiedKeys = new HashSet<>();
+        for (Movie movie : movies) {
+            LocalDate key = movie.getReleaseDate();
+            if (key == null) {
+                continue;
+            }
+            if (copiedKeys.add(key)) {
+                copy.put(key, new HashSet<>(copy.getOrDefault(key, Set.of())));
+            }
+            copy.get(key).add(movie.getImdbId());
+        }
+        return new MovieReleaseDateIndex(copy);
+    }
+
+    /**
+     * Returns an index that no longer contains the movie
+     *
+     * @param movie movie to remove
+     * @return new index
+     */
+    public MovieReleaseDateIndex withoutMovie(Movie movie) {
+        Set<String> ids = movie.getReleaseDate() == null ? null : movieIdsByReleaseDate.get(movie.getReleaseDate());
+        if (ids == null || !ids.contains(movie.getImdbId())) {
+            return this;
+        }
+        NavigableMap<LocalDate, Set<String>> copy = new TreeMap<>(movieIdsByReleaseDate);
+        if (ids.size() == 1) {
+            copy.remove(movie.getReleaseDate());
+        } else {
+            ids = new HashSet<>(ids);
+            ids.remove(movie.getImdbId());
+            copy.put(movie.getReleaseDate(), ids);
+        }
+        return new MovieReleaseDateIndex(copy);
+    }
+
+    /**
+     * Returns ids of movies released after the first date, up to and including the second one
+     *
+     * @param fromExclusive start of the period, exclusive
+     * @param toInclusive   end of the period, inclusive
+     * @return movie ids
+     */
+    public Set<String> findReleasedBetween(LocalDate fromExclusive, LocalDate toInclusive) {
+        if (!fromExclusive.isBefore(toInclusive)) {
+            return Set.of();
+        }
+        Set<String> result = new LinkedHashSet<>();
+        movieIdsByReleaseDate.subMap(fromExclusive, false, toInclusive, true).values().forEach(result::addAll);
+        return result;
+    }
+}
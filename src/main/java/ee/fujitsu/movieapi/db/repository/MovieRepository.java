@@ -1,111 +1,246 @@
 package ee.fujitsu.movieapi.db.repository;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
 import ee.fujitsu.movieapi.db.configuration.ApiConfiguration;
-import ee.fujitsu.movieapi.db.model.movie.MovieMetadata;
+import ee.fujitsu.movieapi.db.metadata.MovieMetadataService;
+import ee.fujitsu.movieapi.db.persistence.DataFileFormat;
+import ee.fujitsu.movieapi.db.persistence.DataFileFormats;
+import ee.fujitsu.movieapi.db.persistence.GroupCommitWriter;
 import ee.fujitsu.movieapi.rest.api.exception.movie.MovieIdNotUniqueException;
 import ee.fujitsu.movieapi.rest.api.exception.general.NotFoundException;
 import ee.fujitsu.movieapi.rest.api.exception.movie.MovieValidationException;
 import ee.fujitsu.movieapi.db.model.movie.Movie;
+import ee.fujitsu.movieapi.db.model.movie.MoviePriceClass;
+import ee.fujitsu.movieapi.db.model.movie.MoviePriceClass.PriceClassConstants;
 import ee.fujitsu.movieapi.rest.controller.utils.MovieUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Repository;
-import org.springframework.web.bind.annotation.RestController;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.web.client.RestClientException;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.io.File;
 import java.io.IOException;
+import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Repository
 public class MovieRepository implements IRepository<Movie> {
     private static final Logger logger = LoggerFactory.getLogger(MovieRepository.class);
-    private final ObjectMapper mapper = new ObjectMapper(new YAMLFactory()).findAndRegisterModules();
     private ApiConfiguration apiConfiguration;
+    private MovieMetadataService metadataService;
     private File dataFile;
-    private List<Movie> movies;
+    private DataFileFormat dataFormat;
+    private volatile MovieCatalog catalog = MovieCatalog.of(0, List.of());
+    private LocalDate lastRepricingDate;
+    private final List<Consumer<MovieCatalog>> catalogListeners = new CopyOnWriteArrayList<>();
+    private GroupCommitWriter<MovieCatalog> commitWriter;
 
     @Autowired
     public void setApiConfiguration(ApiConfiguration apiConfiguration) {
         this.apiConfiguration = apiConfiguration;
     }
 
+    @Autowired
+    public void setMetadataService(MovieMetadataService metadataService) {
+        this.metadataService = metadataService;
+    }
+
     @PostConstruct
     public void initializeFields() throws IOException {
+        this.dataFormat = DataFileFormats.forExtension(apiConfiguration.getFileExtension());
         this.dataFile = new File(
                 apiConfiguration.getFilePath() +
                         apiConfiguration.getMovieFileName() +
                         apiConfiguration.getFileExtension()
         );
-        this.movies = findAllFromFile();
+        this.commitWriter = new GroupCommitWriter<>("movies", this::writeCatalog,
+                apiConfiguration.getDurabilityMode(),
+                apiConfiguration.getCommitWindowMs(),
+                apiConfiguration.getMaxBatch());
     }
 
     /**
-     * Reads movies from a db file
+     * Loads the catalog from the db file and publishes it. Called once at startup by the StartupLoader,
+     * the catalog is empty until then.
+     *
+     * @throws IOException if unable to read
+     */
+    public void loadCatalog() throws IOException {
+        List<Movie> movies = findAllFromFile();
+        synchronized (this) {
+            publish(MovieCatalog.of(catalog.getVersion() + 1, movies));
+            this.lastRepricingDate = LocalDate.now();
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        commitWriter.close();
+    }
+
+    /**
+     * Reads movies from a db file. Every movie is decoded in the configured file format,
+     * priced and added to the returned list one at a time, so no intermediate copy of the file is built.
      *
      * @return movies - A list of movies
      */
     @Override
     public List<Movie> findAllFromFile() throws IOException {
-        Movie[] objects = mapper.readValue(dataFile, Movie[].class);
-        List<Movie> movies = new ArrayList<>(List.of(objects));
-        movies.forEach(movie -> {
+        List<Movie> movies = new ArrayList<>();
+        Consumer<Movie> loader = movie -> {
             movie.setPriceClass();
             movie.setPrice();
-        });
+            movies.add(movie);
+        };
+        dataFormat.readRecords(dataFile, Movie.class, loader);
         return movies;
     }
 
     /**
-     * Writes the movies list to file
+     * Writes the current catalog snapshot to file
      *
      * @throws IOException TBA
      */
     @Override
     public void saveToFile() throws IOException {
-        if (apiConfiguration.getFileExtension().equals(".json")) {
-            new ObjectMapper().findAndRegisterModules().writeValue(dataFile, movies);
-        } else if (apiConfiguration.getFileExtension().equals(".yaml")) {
-            mapper.writeValue(dataFile, movies);
-        }
+        dataFormat.writeRecords(dataFile, Movie.class, catalog.getMovies());
+    }
+
+    /**
+     * Writes the latest catalog of a batch to file
+     *
+     * @param batch catalogs to persist, the last one being the most recent
+     * @throws IOException if unable to write
+     */
+    private void writeCatalog(List<MovieCatalog> batch) throws IOException {
+        dataFormat.writeRecords(dataFile, Movie.class, batch.get(batch.size() - 1).getMovies());
     }
 
     /**
      * Returns previously loaded movies list
      *
-     * @return list of movies
+     * @return unmodifiable list of movies of the current catalog snapshot
      */
     @Override
     public List<Movie> findAll() {
-        return movies;
+        return catalog.getMovies();
+    }
+
+    /**
+     * Returns the current catalog snapshot. It never changes, writers publish a new one.
+     *
+     * @return catalog snapshot
+     */
+    public MovieCatalog getCatalog() {
+        return catalog;
+    }
+
+    /**
+     * Returns the version of the current catalog snapshot. It grows with every change.
+     *
+     * @return catalog version
+     */
+    public long getCatalogVersion() {
+        return catalog.getVersion();
+    }
+
+    /**
+     * Registers a listener that is called with every newly published catalog, e.g. to drop cached responses
+     * of older versions. Listeners are called while holding the repository lock and must be quick.
+     *
+     * @param listener catalog listener
+     */
+    public void addCatalogListener(Consumer<MovieCatalog> listener) {
+        catalogListeners.add(listener);
+    }
+
+    /**
+     * Makes the catalog visible to readers. Must be called while holding the repository lock.
+     *
+     * @param nextCatalog new catalog snapshot
+     */
+    private void publish(MovieCatalog nextCatalog) {
+        if (nextCatalog == this.catalog) {
+            return;
+        }
+        this.catalog = nextCatalog;
+        catalogListeners.forEach(listener -> listener.accept(nextCatalog));
+    }
+
+    /**
+     * Persists the next catalog and publishes it once it is on disk. Must be called while holding
+     * the repository lock, so every change is built on the last persisted catalog. If persisting fails,
+     * readers keep the current catalog and never see the failed version.
+     *
+     * @param nextCatalog catalog with the change
+     * @throws IOException if unable to persist
+     */
+    private void commitAndPublish(MovieCatalog nextCatalog) throws IOException {
+        commitWriter.commit(nextCatalog);
+        publish(nextCatalog);
     }
 
     /**
      * Adds new movie to the list of movies and saves it to file.
-     * Then reads from the db again to recalculate prices.
+     * The new catalog is published once it is persisted.
      *
      * @param movie Movie that we want to save
      * @return movies List of movies
      * @throws IOException TBA
      */
     public Movie add(Movie movie) throws IOException, MovieIdNotUniqueException, MovieValidationException {
-        if (!MovieUtils.checkNecessaryFieldsPresent(movie) || !MovieUtils.checkUnique(movie.getImdbId(), movies)) {
-            throw new MovieIdNotUniqueException();
+        synchronized (this) {
+            if (!MovieUtils.checkNecessaryFieldsPresent(movie) || !MovieUtils.checkUnique(movie.getImdbId(), catalog.getMoviesById())) {
+                throw new MovieIdNotUniqueException();
+            }
+            movie.setPriceClass();
+            movie.setPrice();
+            commitAndPublish(catalog.withMovie(movie));
         }
-        movie.setPriceClass();
-        movie.setPrice();
-        movies.add(movie);
-        saveToFile();
         return movie;
     }
 
+    /**
+     * Adds many movies as one change: they are published as a single catalog version and the file is written once.
+     * The movies must have their necessary fields present and unique imdb ids. Movies whose imdb id
+     * is already in the catalog are skipped.
+     *
+     * @param movies movies to add
+     * @return the movies that were added
+     * @throws IOException if unable to persist
+     */
+    public List<Movie> addAll(List<Movie> movies) throws IOException {
+        List<Movie> added = new ArrayList<>(movies.size());
+        synchronized (this) {
+            Map<String, Movie> moviesById = catalog.getMoviesById();
+            for (Movie movie : movies) {
+                if (MovieUtils.checkUnique(movie.getImdbId(), moviesById)) {
+                    movie.setPriceClass();
+                    movie.setPrice();
+                    added.add(movie);
+                }
+            }
+            if (!added.isEmpty()) {
+                commitAndPublish(catalog.withMovies(added));
+            }
+        }
+        return added;
+    }
+
     /**
      * Removes movie from the movies list and saves it to file
      *
@@ -114,11 +249,13 @@ public class MovieRepository implements IRepository<Movie> {
      */
 
     public void deleteMovieFromFile(String id) throws NotFoundException, IOException, NullPointerException {
-        movies.stream().filter(movie -> movie.getImdbId().equals(id))
-                .findAny().orElseThrow(NotFoundException::new);
-        movies.removeIf(movie -> movie.getImdbId().equals(id));
-        saveToFile();
-
+        synchronized (this) {
+            Movie removed = catalog.getMoviesById().get(id);
+            if (removed == null) {
+                throw new NotFoundException();
+            }
+            commitAndPublish(catalog.withoutMovie(removed));
+        }
     }
 
     /**
@@ -133,10 +270,62 @@ public class MovieRepository implements IRepository<Movie> {
         MovieUtils.checkNecessaryFieldsPresent(movie);
         movie.setPriceClass();
         movie.setPrice();
-        movies.stream().filter(mov -> mov.getImdbId().equals(id))
-                .findAny().orElseThrow(NotFoundException::new);
-        movies.replaceAll(mov -> mov.getImdbId().equals(id) ? movie : mov);
-        saveToFile();
+        synchronized (this) {
+            Movie replaced = catalog.getMoviesById().get(id);
+            if (replaced == null) {
+                throw new NotFoundException();
+            }
+            commitAndPublish(catalog.withReplacedMovie(replaced, movie));
+        }
+    }
+
+    /**
+     * Updates price class and price of the movies that crossed a price class boundary since the last repricing.
+     * Only movies released on the days that reached a boundary are looked at, found through the release date index.
+     * Before the first repricing of a loaded catalog, every movie with a release date is looked at.
+     * All changes are persisted once and then published as one catalog version.
+     *
+     * @param today day to reprice the catalog for
+     * @return number of repriced movies
+     * @throws IOException if unable to persist
+     */
+    public int repriceMovies(LocalDate today) throws IOException {
+        Map<String, Movie> repriced = new LinkedHashMap<>();
+        synchronized (this) {
+            if (lastRepricingDate != null && !today.isAfter(lastRepricingDate)) {
+                return 0;
+            }
+            MovieCatalog snapshot = catalog;
+            Set<String> candidates = new LinkedHashSet<>();
+            if (lastRepricingDate == null) {
+                candidates.addAll(snapshot.getMoviesById().keySet());
+            } else {
+                MovieReleaseDateIndex releaseDateIndex = snapshot.getReleaseDateIndex();
+                for (int boundary : new int[]{PriceClassConstants.DAYS_UNTIL_REGULAR, PriceClassConstants.DAYS_UNTIL_OLD}) {
+                    candidates.addAll(releaseDateIndex.findReleasedBetween(
+                            lastRepricingDate.minusDays(boundary), today.minusDays(boundary)));
+                }
+            }
+            for (String id : candidates) {
+                Movie movie = snapshot.getMoviesById().get(id);
+                if (movie.getReleaseDate() == null) {
+                    continue;
+                }
+                MoviePriceClass priceClass = MoviePriceClass.getMoviePriceClass(movie.getReleaseDate(), today);
+                if (priceClass != movie.getPriceClass()) {
+                    Movie repricedMovie = new Movie(movie);
+                    repricedMovie.setPriceClass(priceClass);
+                    repricedMovie.setPrice();
+                    repriced.put(id, repricedMovie);
+                }
+            }
+            if (!repriced.isEmpty()) {
+                // On failure the date is kept, so the movies are repriced again on the next run
+                commitAndPublish(snapshot.withReplacedMovies(repriced));
+            }
+            this.lastRepricingDate = today;
+        }
+        return repriced.size();
     }
 
     /**
@@ -146,35 +335,121 @@ public class MovieRepository implements IRepository<Movie> {
      * @return a list of movies
      */
     public List<Movie> findMoviesByCategory(String categoryName) throws NotFoundException {
-        List<Movie> moviesToReturn = movies.stream()
-                .filter(s -> s.getCategories().stream()
-                        .anyMatch(categoryName::equalsIgnoreCase))
+        return findMoviesByCategory(catalog, categoryName);
+    }
+
+    /**
+     * Returns a list of movies of the catalog snapshot where categories field contains the specified category
+     *
+     * @param snapshot     catalog snapshot to search
+     * @param categoryName the category you want to display
+     * @return a list of movies
+     */
+    public List<Movie> findMoviesByCategory(MovieCatalog snapshot, String categoryName) throws NotFoundException {
+        return resolveMovies(snapshot, snapshot.getCategoryIndex().find(categoryName));
+    }
+
+    /**
+     * Returns a list of movies that are in all or in any of the specified categories
+     *
+     * @param categoryNames the categories you want to display
+     * @param matchAll      true to require every category, false to require at least one
+     * @return a list of movies
+     */
+    public List<Movie> findMoviesByCategories(Collection<String> categoryNames, boolean matchAll) throws NotFoundException {
+        return findMoviesByCategories(catalog, categoryNames, matchAll);
+    }
+
+    /**
+     * Returns a list of movies of the catalog snapshot that are in all or in any of the specified categories
+     *
+     * @param snapshot      catalog snapshot to search
+     * @param categoryNames the categories you want to display
+     * @param matchAll      true to require every category, false to require at least one
+     * @return a list of movies
+     */
+    public List<Movie> findMoviesByCategories(MovieCatalog snapshot, Collection<String> categoryNames,
+                                              boolean matchAll) throws NotFoundException {
+        MovieCategoryIndex categoryIndex = snapshot.getCategoryIndex();
+        return resolveMovies(snapshot,
+                matchAll ? categoryIndex.findAll(categoryNames) : categoryIndex.findAny(categoryNames));
+    }
+
+    private List<Movie> resolveMovies(MovieCatalog snapshot, Set<String> ids) throws NotFoundException {
+        List<Movie> moviesToReturn = ids.stream()
+                .map(snapshot.getMoviesById()::get)
+                .filter(Objects::nonNull)
                 .collect(Collectors.toList());
         if (moviesToReturn.size() > 0) {
             return moviesToReturn;
         } else {
             throw new NotFoundException();
         }
+    }
 
+    /**
+     * Finds a movie by imdb id without fetching metadata. Never leaves the process,
+     * so it is meant for hot paths that only need the stored fields, like order pricing.
+     * The returned movie is the stored instance and must not be modified.
+     *
+     * @param id IMDB id
+     * @return movie with this imdb id
+     * @throws NotFoundException movie not found
+     */
+    public Movie findLocalById(String id) throws NotFoundException {
+        Movie movie = catalog.getMoviesById().get(id);
+        if (movie == null) {
+            throw new NotFoundException("Movie not found");
+        }
+        return movie;
     }
 
     /**
      * Finds a movie by imdb id. If id is found in imdb, fetches additional metadata.
+     * The metadata is set on a copy, the stored movie is left untouched.
+     * If omdbApi fails or times out, the movie is returned with the metadata it was stored with.
      *
      * @param id IMDB id
-     * @return first movie with this imdb id in the file
+     * @return copy of the movie with this imdb id, with metadata
      * @throws NotFoundException movie not found
      */
     @Override
     public Movie findById(String id) throws NotFoundException {
-        String url = apiConfiguration.getOmdbUrl()
-                + "?apikey=" + apiConfiguration.getApiKey()
-                + "&i=" + id;
-        RestTemplate restTemplate = new RestTemplate();
-        MovieMetadata metadata = restTemplate.getForObject(url, MovieMetadata.class);
-        return movies.stream().filter(movie -> movie.getImdbId().equals(id))
-                .peek(movie -> movie.setMovieMetadata(metadata))
-                .findFirst().orElseThrow(() -> new NotFoundException("Movie not found"));
+        Movie movieWithMetadata = new Movie(findLocalById(id));
+        try {
+            movieWithMetadata.setMovieMetadata(metadataService.getMetadata(id));
+        } catch (RestClientException e) {
+            logger.warn("Unable to fetch metadata for " + id + ": " + e.getMessage());
+        }
+        return movieWithMetadata;
+    }
+
+    /**
+     * Finds a movie by imdb id and fetches its metadata without blocking the caller.
+     * If the metadata does not arrive within the configured deadline, or omdbApi fails,
+     * the movie is returned with the metadata it was stored with.
+     * When async mode is disabled the lookup is done in the calling thread.
+     *
+     * @param id IMDB id
+     * @return future with a copy of the movie with this imdb id
+     * @throws NotFoundException movie not found
+     */
+    public CompletableFuture<Movie> findByIdAsync(String id) throws NotFoundException {
+        if (!apiConfiguration.isOmdbAsyncEnabled()) {
+            return CompletableFuture.completedFuture(findById(id));
+        }
+        Movie movie = findLocalById(id);
+        return metadataService.getMetadataAsync(id)
+                .completeOnTimeout(movie.getMovieMetadata(), apiConfiguration.getOmdbAsyncDeadlineMs(), TimeUnit.MILLISECONDS)
+                .exceptionally(e -> {
+                    logger.warn("Unable to fetch metadata for " + id + ": " + e.getMessage());
+                    return movie.getMovieMetadata();
+                })
+                .thenApply(metadata -> {
+                    Movie movieWithMetadata = new Movie(movie);
+                    movieWithMetadata.setMovieMetadata(metadata);
+                    return movieWithMetadata;
+                });
     }
 
 
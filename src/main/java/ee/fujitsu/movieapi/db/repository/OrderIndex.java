@@ -0,0 +1,188 @@
+package ee.fujitsu.movieapi.db.repository;
+
+import ee.fujitsu.movieapi.db.model.order.Order;
+import ee.fujitsu.movieapi.db.model.order.OrderItem;
+import ee.fujitsu.movieapi.db.model.order.OrderStatus;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Secondary indexes of the stored orders: order ids by movie id and by status, and orders sorted by timestamp.
+ * The indexes are concurrent, changes of different orders may be applied in parallel, changes of one order
+ * must be applied one at a time. A change adds the new entries before removing the old ones, so a reader
+ * may briefly see an order under both its old and new keys, but never under neither. Readers are expected
+ * to check the stored order against their query.
+ */
+public class OrderIndex {
+    private final ConcurrentMap<String, NavigableSet<String>> orderIdsByMovieId = new ConcurrentHashMap<>();
+    private final Map<OrderStatus, NavigableSet<String>> orderIdsByStatus = new EnumMap<>(OrderStatus.class);
+    private final NavigableMap<TimestampKey, Order> ordersByTimestamp = new ConcurrentSkipListMap<>();
+
+    public OrderIndex() {
+        for (OrderStatus status : OrderStatus.values()) {
+            orderIdsByStatus.put(status, new ConcurrentSkipListSet<>());
+        }
+    }
+
+    /**
+     * Replaces the entries of a stored order
+     *
+     * @param previous stored order before the change, or null if it is added
+     * @param current  stored order after the change, or null if it is deleted
+     */
+    public void update(Order previous, Order current) {
+        Set<String> previousMovieIds = movieIds(previous);
+        Set<String> currentMovieIds = movieIds(current);
+        if (current != null) {
+            for (String movieId : currentMovieIds) {
+                if (!previousMovieIds.contains(movieId)) {
+                    // Added inside compute, so that it cannot race with the removal of an emptied set
+                    orderIdsByMovieId.compute(movieId, (key, ids) -> {
+                        NavigableSet<String> next = ids == null ? new ConcurrentSkipListSet<>() : ids;
+                        next.add(current.getOrderId());
+                        return next;
+                    });
+                }
+            }
+            if (current.getOrderStatus() != null) {
+                orderIdsByStatus.get(current.getOrderStatus()).add(current.getOrderId());
+            }
+            if (current.getTimestamp() != null) {
+                ordersByTimestamp.put(new TimestampKey(current.getTimestamp(), current.getOrderId()), current);
+            }
+        }
+        if (previous != null) {
+            for (String movieId : previousMovieIds) {
+                if (!currentMovieIds.contains(movieId)) {
+                    orderIdsByMovieId.computeIfPresent(movieId, (key, ids) -> {
+                        ids.remove(previous.getOrderId());
+                        return ids.isEmpty() ? null : ids;
+                    });
+                }
+            }
+            if (previous.getOrderStatus() != null
+                    && (current == null || previous.getOrderStatus() != current.getOrderStatus())) {
+                orderIdsByStatus.get(previous.getOrderStatus()).remove(previous.getOrderId());
+            }
+            if (previous.getTimestamp() != null
+                    && (current == null || !previous.getTimestamp().equals(current.getTimestamp()))) {
+                ordersByTimestamp.remove(new TimestampKey(previous.getTimestamp(), previous.getOrderId()));
+            }
+        }
+    }
+
+    /**
+     * Removes all entries
+     */
+    public void clear() {
+        orderIdsByMovieId.clear();
+        orderIdsByStatus.values().forEach(Set::clear);
+        ordersByTimestamp.clear();
+    }
+
+    /**
+     * Returns ids of orders containing the movie
+     *
+     * @param movieId imdb id of the movie
+     * @return live, read-only set of order ids in orderId order
+     */
+    public NavigableSet<String> findByMovieId(String movieId) {
+        NavigableSet<String> ids = orderIdsByMovieId.get(movieId);
+        return ids == null ? Collections.emptyNavigableSet() : Collections.unmodifiableNavigableSet(ids);
+    }
+
+    /**
+     * Returns ids of orders with the status
+     *
+     * @param status order status
+     * @return live, read-only set of order ids in orderId order
+     */
+    public NavigableSet<String> findByStatus(OrderStatus status) {
+        return Collections.unmodifiableNavigableSet(orderIdsByStatus.get(status));
+    }
+
+    /**
+     * Returns orders with a timestamp in the range, in timestamp order and then orderId order
+     *
+     * @param from           start of the range, inclusive, or null for no lower bound
+     * @param to             end of the range, exclusive, or null for no upper bound
+     * @param afterTimestamp if given with afterId, only orders after this position are returned
+     * @param afterId        orderId of the order after which to continue
+     * @return live, read-only view of the stored orders
+     */
+    public Collection<Order> findByTimestamp(LocalDateTime from, LocalDateTime to,
+                                             LocalDateTime afterTimestamp, String afterId) {
+        TimestampKey lower = from == null ? null : new TimestampKey(from, "");
+        boolean lowerInclusive = true;
+        if (afterTimestamp != null && afterId != null) {
+            TimestampKey after = new TimestampKey(afterTimestamp, afterId);
+            if (lower == null || after.compareTo(lower) >= 0) {
+                lower = after;
+                lowerInclusive = false;
+            }
+        }
+        TimestampKey upper = to == null ? null : new TimestampKey(to, "");
+        if (lower != null && upper != null && lower.compareTo(upper) >= 0) {
+            return List.of();
+        }
+        NavigableMap<TimestampKey, Order> range = ordersByTimestamp;
+        if (lower != null) {
+            range = range.tailMap(lower, lowerInclusive);
+        }
+        if (upper != null) {
+            range = range.headMap(upper, false);
+        }
+        return Collections.unmodifiableCollection(range.values());
+    }
+
+    private static Set<String> movieIds(Order order) {
+        if (order == null || order.getOrderItemList() == null) {
+            return Set.of();
+        }
+        Set<String> movieIds = new HashSet<>();
+        for (OrderItem item : order.getOrderItemList()) {
+            if (item.getMovieId() != null) {
+                movieIds.add(item.getMovieId());
+            }
+        }
+        return movieIds;
+    }
+
+    private static final class TimestampKey implements Comparable<TimestampKey> {
+        private final LocalDateTime timestamp;
+        private final String orderId;
+
+        private TimestampKey(LocalDateTime timestamp, String orderId) {
+            this.timestamp = timestamp;
+            this.orderId = orderId;
+        }
+
+        @Override
+        public int compareTo(TimestampKey other) {
+            int byTimestamp = timestamp.compareTo(other.timestamp);
+            return byTimestamp != 0 ? byTimestamp : orderId.compareTo(other.orderId);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof TimestampKey)) {
+                return false;
+            }
+            TimestampKey key = (TimestampKey) o;
+            return timestamp.equals(key.timestamp) && orderId.equals(key.orderId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(timestamp, orderId);
+        }
+    }
+}
@@ -1,30 +1,73 @@
 package ee.fujitsu.movieapi.db.repository;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import com.google.common.util.concurrent.Striped;
 import ee.fujitsu.movieapi.db.configuration.ApiConfiguration;
 import ee.fujitsu.movieapi.db.model.order.Order;
+import ee.fujitsu.movieapi.db.model.order.OrderItem;
+import ee.fujitsu.movieapi.db.model.order.OrderStatus;
 import ee.fujitsu.movieapi.db.model.statistics.OrderStatistics;
+import ee.fujitsu.movieapi.db.persistence.DataFileFormat;
+import ee.fujitsu.movieapi.db.persistence.DataFileFormats;
+import ee.fujitsu.movieapi.db.persistence.DataValueFormat;
+import ee.fujitsu.movieapi.db.persistence.GroupCommitWriter;
+import ee.fujitsu.movieapi.db.persistence.OrderLog;
+import ee.fujitsu.movieapi.db.persistence.OrderLogRecord;
+import ee.fujitsu.movieapi.db.persistence.OrderLogRecordType;
 import ee.fujitsu.movieapi.rest.api.exception.general.NotFoundException;
+import ee.fujitsu.movieapi.rest.api.exception.order.OrderVersionConflictException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.io.File;
 import java.io.IOException;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
+/**
+ * Keeps orders in memory and persists them through the order log.
+ * Writes to the same order are serialized by a striped lock keyed by orderId, so writes to different
+ * orders run in parallel. A change is logged before it is published, so a failed write leaves the order as it was. Stored orders are never modified: findById hands out copies, and update
+ * only accepts a copy whose version still matches the stored one.
+ * Secondary indexes by movie, status and timestamp are maintained under the same lock as the order.
+ */
 @Repository
 public class OrderRepository implements IRepository<Order>{
     private static final Logger logger = LoggerFactory.getLogger(OrderRepository.class);
-    private final ObjectMapper mapper = new ObjectMapper(new YAMLFactory()).findAndRegisterModules();
+    private static final int PAGE_CAPACITY_HINT = 128;
+    private final ObjectMapper jsonMapper = new ObjectMapper().findAndRegisterModules();
     private ApiConfiguration apiConfiguration;
     private File movieDataFile;
     private File statsDataFile;
-    private List<Order> orders;
+    private DataFileFormat dataFormat;
+    private DataValueFormat statsFormat;
+    private OrderLog orderLog;
+    private GroupCommitWriter<OrderLogRecord> logWriter;
+    private GroupCommitWriter<OrderStatistics> statsWriter;
+    private Striped<Lock> orderLocks;
+    private final NavigableMap<String, Order> ordersById = new ConcurrentSkipListMap<>();
+    private final OrderIndex orderIndex = new OrderIndex();
+    /**
+     * Orders as of the last record appended to the order log, only changed by the log writer.
+     * Log compaction snapshots it, since ordersById lags behind the log until the writing threads publish.
+     */
+    private final NavigableMap<String, Order> loggedOrders = new TreeMap<>();
     private OrderStatistics statistics;
 
     @Autowired
@@ -34,6 +77,8 @@ public class OrderRepository implements IRepository<Order>{
 
     @PostConstruct
     public void initializeFields() throws IOException {
+        this.dataFormat = DataFileFormats.forExtension(apiConfiguration.getFileExtension());
+        this.statsFormat = DataFileFormats.forValues(apiConfiguration.getFileExtension());
         this.movieDataFile = new File(
                 apiConfiguration.getFilePath() +
                         apiConfiguration.getOrderFileName() +
@@ -42,58 +87,270 @@ public class OrderRepository implements IRepository<Order>{
         this.statsDataFile = new File(
                 apiConfiguration.getFilePath() +
                         apiConfiguration.getOrderStatsFileName() +
-                        apiConfiguration.getFileExtension()
+                        statsFormat.getExtension()
         );
-        this.orders = findAllFromFile();
+        this.orderLog = new OrderLog(new File(
+                apiConfiguration.getFilePath() +
+                        apiConfiguration.getOrderFileName() +
+                        ".log"
+        ), jsonMapper);
+        this.logWriter = new GroupCommitWriter<>("orders", this::writeToLog,
+                apiConfiguration.getDurabilityMode(),
+                apiConfiguration.getCommitWindowMs(),
+                apiConfiguration.getMaxBatch());
+        this.statsWriter = new GroupCommitWriter<>("orderStatistics", this::writeStatistics,
+                apiConfiguration.getDurabilityMode(),
+                apiConfiguration.getCommitWindowMs(),
+                apiConfiguration.getMaxBatch());
+        this.orderLocks = Striped.lock(apiConfiguration.getOrderLockStripes());
+    }
+
+    /**
+     * Loads the orders and their indexes from the db file and the order log.
+     * Called once at startup by the StartupLoader, there are no orders until then.
+     * @throws IOException if unable to read
+     */
+    public void loadOrders() throws IOException {
+        ordersById.clear();
+        orderIndex.clear();
+        loadFromFile(ordersById);
+        for (Order order : ordersById.values()) {
+            orderIndex.update(null, order);
+        }
+        synchronized (loggedOrders) {
+            loggedOrders.clear();
+            loggedOrders.putAll(ordersById);
+        }
+    }
+
+    /**
+     * Loads the statistics from their db file. Called once at startup by the StartupLoader.
+     * @throws IOException if unable to read
+     */
+    public void loadStatistics() throws IOException {
         this.statistics = readStatisticsFromFile();
     }
 
+    @PreDestroy
+    public void close() throws IOException {
+        logWriter.close();
+        statsWriter.close();
+        orderLog.close();
+    }
+
     /**
-     * Reads orders from file
+     * Reads orders from the last snapshot file and replays the order log on top of it
      * @return orders from file
      * @throws IOException if unable to read
      */
     @Override
     public List<Order> findAllFromFile() throws IOException {
-        Order[] objects = mapper.readValue(movieDataFile, Order[].class);
-        List<Order> orders = new ArrayList<>(List.of(objects));
-        orders.forEach(movie -> {
-        });
-        return orders;
+        Map<String, Order> ordersById = new LinkedHashMap<>();
+        loadFromFile(ordersById);
+        return new ArrayList<>(ordersById.values());
+    }
+
+    /**
+     * Reads orders from the last snapshot file straight into the target map, one order at a time,
+     * and replays the order log on top of them
+     * @param target map of orders by orderId to fill
+     * @throws IOException if unable to read
+     */
+    private void loadFromFile(Map<String, Order> target) throws IOException {
+        Consumer<Order> loader = order -> target.put(order.getOrderId(), order);
+        dataFormat.readRecords(movieDataFile, Order.class, loader);
+        int replayed = orderLog.replay(target);
+        if (replayed > 0) {
+            logger.info("Replayed " + replayed + " records from the order log");
+        }
     }
 
     /**
      * Returns array of orders
-     * @return array of orders
+     * @return array of orders. The orders are the stored instances and must not be modified.
      */
     @Override
     public List<Order> findAll() {
-        return orders;
+        return new ArrayList<>(ordersById.values());
+    }
+
+    /**
+     * Returns a live, read-only view of the orders in orderId order. Iterating it does not copy the orders
+     * and never fails because of concurrent changes, it may or may not reflect changes made meanwhile.
+     * @return orders. The orders are the stored instances and must not be modified.
+     */
+    public Iterable<Order> iterateAll() {
+        return Collections.unmodifiableCollection(ordersById.values());
+    }
+
+    /**
+     * Returns a page of orders in orderId order. Orders added or removed meanwhile
+     * do not shift the orders after the previous page.
+     * @param afterId orderId of the last order of the previous page, or null for the first page
+     * @param limit maximum number of orders
+     * @return orders with orderId greater than afterId. The orders are the stored instances and must not be modified.
+     */
+    public List<Order> findPage(String afterId, int limit) {
+        Collection<Order> tail = afterId == null ? ordersById.values() : ordersById.tailMap(afterId, false).values();
+        List<Order> page = new ArrayList<>(limit);
+        for (Order order : tail) {
+            if (page.size() == limit) {
+                break;
+            }
+            page.add(order);
+        }
+        return page;
+    }
+
+    /**
+     * Finds orders containing the movie, in orderId order
+     * @param movieId imdb id of the movie
+     * @param afterId orderId of the last order of the previous page, or null for the first page
+     * @param limit maximum number of orders
+     * @return orders. The orders are the stored instances and must not be modified.
+     */
+    public List<Order> findByMovieId(String movieId, String afterId, int limit) {
+        return findIndexed(orderIndex.findByMovieId(movieId), afterId, limit, order -> containsMovie(order, movieId));
     }
 
     /**
-     * Saves order to file
+     * Finds orders with the status, in orderId order
+     * @param status order status
+     * @param afterId orderId of the last order of the previous page, or null for the first page
+     * @param limit maximum number of orders
+     * @return orders. The orders are the stored instances and must not be modified.
+     */
+    public List<Order> findByStatus(OrderStatus status, String afterId, int limit) {
+        return findIndexed(orderIndex.findByStatus(status), afterId, limit, order -> order.getOrderStatus() == status);
+    }
+
+    /**
+     * Finds orders last changed within the period, in timestamp order
+     * @param from start of the period, inclusive, or null
+     * @param to end of the period, exclusive, or null
+     * @param status if given, only orders with this status are returned
+     * @param afterTimestamp timestamp of the last order of the previous page, or null for the first page
+     * @param afterId orderId of the last order of the previous page, or null for the first page
+     * @param limit maximum number of orders
+     * @return orders. The orders are the stored instances and must not be modified.
+     */
+    public List<Order> findByTimestamp(LocalDateTime from, LocalDateTime to, OrderStatus status,
+                                       LocalDateTime afterTimestamp, String afterId, int limit) {
+        List<Order> page = new ArrayList<>(Math.min(limit, PAGE_CAPACITY_HINT));
+        for (Order order : orderIndex.findByTimestamp(from, to, afterTimestamp, afterId)) {
+            if (page.size() == limit) {
+                break;
+            }
+            if (ordersById.get(order.getOrderId()) == order && (status == null || order.getOrderStatus() == status)) {
+                page.add(order);
+            }
+        }
+        return page;
+    }
+
+    /**
+     * Resolves indexed order ids after afterId, skipping entries of changes that are still being applied
+     * @param orderIds index entries in orderId order
+     * @param afterId orderId to continue after, or null
+     * @param limit maximum number of orders
+     * @param matches check of the stored order against the query
+     * @return stored orders
+     */
+    private List<Order> findIndexed(NavigableSet<String> orderIds, String afterId, int limit, Predicate<Order> matches) {
+        Collection<String> tail = afterId == null ? orderIds : orderIds.tailSet(afterId, false);
+        List<Order> page = new ArrayList<>(Math.min(limit, PAGE_CAPACITY_HINT));
+        for (String orderId : tail) {
+            if (page.size() == limit) {
+                break;
+            }
+            Order order = ordersById.get(orderId);
+            if (order != null && matches.test(order)) {
+                page.add(order);
+            }
+        }
+        return page;
+    }
+
+    private static boolean containsMovie(Order order, String movieId) {
+        for (OrderItem item : order.getOrderItemList()) {
+            if (movieId.equals(item.getMovieId())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Writes a snapshot of all orders to file
      * @throws IOException If unable to write
      */
     @Override
     public void saveToFile() throws IOException {
-        if (apiConfiguration.getFileExtension().equals(".json")) {
-            new ObjectMapper().findAndRegisterModules().writeValue(movieDataFile, orders);
-        } else if (apiConfiguration.getFileExtension().equals(".yaml")) {
-            mapper.writeValue(movieDataFile, orders);
+        dataFormat.writeRecords(movieDataFile, Order.class, new ArrayList<>(ordersById.values()));
+    }
+
+    /**
+     * Persists a record through the order log and waits until it is written
+     * @param record change to persist
+     * @throws IOException If unable to write
+     */
+    private void appendToLog(OrderLogRecord record) throws IOException {
+        logWriter.commit(record);
+    }
+
+    /**
+     * Appends a batch of records to the order log and applies them to the logged orders. Once the log has
+     * grown past the configured interval, the logged orders are written to a fresh snapshot and the log is
+     * truncated, which keeps startup replay bounded. The snapshot holds every logged record, including those
+     * of earlier batches whose threads have not published them yet.
+     * A failed snapshot does not fail the batch, its records are in the log and the snapshot is retried
+     * with the next batch.
+     * @param records changes to persist
+     * @throws IOException If unable to append
+     */
+    private void writeToLog(List<OrderLogRecord> records) throws IOException {
+        synchronized (loggedOrders) {
+            orderLog.append(records);
+            for (OrderLogRecord record : records) {
+                if (record.getType().hasOrderPayload()) {
+                    loggedOrders.put(record.getOrderId(), record.getOrder());
+                } else {
+                    loggedOrders.remove(record.getOrderId());
+                }
+            }
+            if (orderLog.getRecordCount() >= apiConfiguration.getOrderLogSnapshotInterval()) {
+                try {
+                    dataFormat.writeRecords(movieDataFile, Order.class, loggedOrders.values());
+                    orderLog.truncate();
+                } catch (IOException e) {
+                    logger.error("Unable to write an order snapshot, keeping the order log", e);
+                }
+            }
         }
     }
 
+    /**
+     * Writes a snapshot of the latest statistics of a batch to the db file
+     * @param batch statistics to persist, the last one being the most recent
+     * @throws IOException If unable to write
+     */
+    private void writeStatistics(List<OrderStatistics> batch) throws IOException {
+        statsFormat.writeValue(statsDataFile, batch.get(batch.size() - 1).snapshot());
+    }
+
     /**
      * Finds order by its orderId
      * @param id OrderId
-     * @return First found order
+     * @return Copy of the order, that can be modified and passed to update
      * @throws NotFoundException if order is not found
      */
     @Override
     public Order findById(String id) throws NotFoundException {
-        return orders.stream().filter(order -> String.valueOf(order.getOrderId()).equals(id))
-                .findFirst().orElseThrow(() -> new NotFoundException("Order not found"));
+        Order order = id == null ? null : ordersById.get(id);
+        if (order == null) {
+            throw new NotFoundException("Order not found");
+        }
+        return new Order(order);
     }
 
     /**
@@ -103,21 +360,51 @@ public class OrderRepository implements IRepository<Order>{
      * @throws IOException unable to write into file
      */
     public Order add(Order order) throws IOException {
-        orders.add(order);
-        saveToFile();
+        Lock lock = orderLocks.get(order.getOrderId());
+        lock.lock();
+        try {
+            Order stored = new Order(order);
+            appendToLog(OrderLogRecord.of(OrderLogRecordType.CREATE, stored));
+            orderIndex.update(ordersById.put(order.getOrderId(), stored), stored);
+        } finally {
+            lock.unlock();
+        }
         return order;
     }
 
 
     /**
-     * Updates order data
-     * @param order order to update
+     * Updates order data if nobody has updated it since it was read. Closed orders are logged as a checkout,
+     * open ones as an extension. The order lock is held until the change is logged, so the log keeps
+     * the changes of one order in the order they were made.
+     * @param order modified copy of the order, its version is incremented on success
      * @throws NotFoundException if order is not found
+     * @throws OrderVersionConflictException if the order was updated after this copy was read
+     * @throws IOException unable to write into file
      */
-    public void update(Order order) throws NotFoundException {
-        orders.stream().filter(ord -> ord.getOrderId().equals(order.getOrderId()))
-                .findAny().orElseThrow(NotFoundException::new);
-        orders.replaceAll(ord -> ord.getOrderId().equals(ord.getOrderId()) ? order : ord);
+    public void update(Order order) throws NotFoundException, OrderVersionConflictException, IOException {
+        Lock lock = orderLocks.get(order.getOrderId());
+        lock.lock();
+        try {
+            Order current = ordersById.get(order.getOrderId());
+            if (current == null) {
+                throw new NotFoundException();
+            }
+            if (current.getVersion() != order.getVersion()) {
+                throw new OrderVersionConflictException();
+            }
+            Order stored = new Order(order);
+            stored.setVersion(order.getVersion() + 1);
+            OrderLogRecordType type = stored.getOrderStatus() == OrderStatus.CLOSED
+                    ? OrderLogRecordType.CHECKOUT
+                    : OrderLogRecordType.EXTEND;
+            appendToLog(OrderLogRecord.of(type, stored));
+            ordersById.put(order.getOrderId(), stored);
+            orderIndex.update(current, stored);
+            order.setVersion(stored.getVersion());
+        } finally {
+            lock.unlock();
+        }
     }
 
     /**
@@ -128,26 +415,30 @@ public class OrderRepository implements IRepository<Order>{
      * @throws NullPointerException
      */
     public void delete(String id) throws NotFoundException, IOException, NullPointerException {
-        orders.stream().filter(order -> order.getOrderId().equals(id))
-                .findAny().orElseThrow(NotFoundException::new);
-        orders.removeIf(order -> order.getOrderId().equals(id));
-        saveToFile();
+        Lock lock = orderLocks.get(id);
+        lock.lock();
+        try {
+            Order removed = ordersById.get(id);
+            if (removed == null) {
+                throw new NotFoundException();
+            }
+            appendToLog(OrderLogRecord.delete(id));
+            ordersById.remove(id);
+            orderIndex.update(removed, null);
+        } finally {
+            lock.unlock();
+        }
     }
 
 
     /**
-     * Saves statistics to the db file.
-     * The code here is duplicated from the top, but I haven't found a way to make it work in both cases
+     * Saves statistics to the db file. Concurrent calls within the commit window share one write.
      * @param orderStatistics Statistics to save
      * @throws IOException Unable to write
      */
     public void recordStatistics(OrderStatistics orderStatistics) throws IOException {
         this.statistics = orderStatistics;
-        if (apiConfiguration.getFileExtension().equals(".json")) {
-            new ObjectMapper().findAndRegisterModules().writeValue(statsDataFile, statistics);
-        } else if (apiConfiguration.getFileExtension().equals(".yaml")) {
-            mapper.writeValue(statsDataFile, statistics);
-        }
+        statsWriter.commit(orderStatistics);
     }
 
     /**
@@ -164,7 +455,7 @@ public class OrderRepository implements IRepository<Order>{
      * @throws IOException Unable to read
      */
     private OrderStatistics readStatisticsFromFile() throws IOException {
-        this.statistics = mapper.readValue(statsDataFile, OrderStatistics.class);
+        this.statistics = statsFormat.readValue(statsDataFile, OrderStatistics.class);
         if(this.statistics == null){
             this.statistics = new OrderStatistics();
             recordStatistics(this.statistics);
@@ -177,8 +468,7 @@ public class OrderRepository implements IRepository<Order>{
      * @param movieId movie id in stats
      */
     public void deleteFromStats(String movieId) throws IOException {
-        getStatistics().removeFromRentedFor(movieId);
-        getStatistics().removeFromOrderCount(movieId);
+        getStatistics().remove(movieId);
         recordStatistics(statistics);
     }
 }
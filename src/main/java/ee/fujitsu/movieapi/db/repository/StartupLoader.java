@@ -0,0 +1,100 @@
+package ee.fujitsu.movieapi.db.repository;
+
+import ee.fujitsu.movieapi.db.configuration.ApiConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Loads the movie, order and statistics db files concurrently on a bounded executor at startup.
+ * Loading starts as soon as the repositories are created and runs while the rest of the context is built,
+ * it is waited for once all singletons exist, before the web server starts. The application therefore only
+ * becomes ready, and starts accepting traffic, once every store is loaded; a failed load fails the startup.
+ */
+@Component
+public class StartupLoader implements SmartInitializingSingleton {
+    private static final Logger logger = LoggerFactory.getLogger(StartupLoader.class);
+    private final ApiConfiguration apiConfiguration;
+    private final MovieRepository movieRepository;
+    private final OrderRepository orderRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private ExecutorService executor;
+    private CompletableFuture<Void> loading;
+    private long start;
+
+    public StartupLoader(ApiConfiguration apiConfiguration, MovieRepository movieRepository,
+                         OrderRepository orderRepository, ApplicationEventPublisher eventPublisher) {
+        this.apiConfiguration = apiConfiguration;
+        this.movieRepository = movieRepository;
+        this.orderRepository = orderRepository;
+        this.eventPublisher = eventPublisher;
+    }
+
+    @PostConstruct
+    public void startLoading() {
+        AvailabilityChangeEvent.publish(eventPublisher, this, ReadinessState.REFUSING_TRAFFIC);
+        start = System.nanoTime();
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(apiConfiguration.getStartupThreads(), runnable -> {
+            Thread thread = new Thread(runnable, "startup-loader-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        List<CompletableFuture<Void>> tasks = List.of(
+                load("movies", movieRepository::loadCatalog),
+                load("orders", orderRepository::loadOrders),
+                load("orderStatistics", orderRepository::loadStatistics));
+        loading = CompletableFuture.allOf(tasks.toArray(CompletableFuture[]::new));
+    }
+
+    /**
+     * Waits for every store to be loaded
+     *
+     * @throws UncheckedIOException if a store could not be loaded
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        try {
+            loading.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw (UncheckedIOException) e.getCause();
+            }
+            throw e;
+        } finally {
+            executor.shutdown();
+        }
+        logger.info("All stores loaded " + (System.nanoTime() - start) / 1_000_000 + " ms after loading started");
+    }
+
+    private CompletableFuture<Void> load(String store, StoreLoader loader) {
+        return CompletableFuture.runAsync(() -> {
+            long storeStart = System.nanoTime();
+            try {
+                loader.load();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Unable to load " + store + ": " + e.getMessage(), e);
+            }
+            logger.info("Loaded " + store + " in " + (System.nanoTime() - storeStart) / 1_000_000 + " ms");
+        }, executor);
+    }
+
+    @FunctionalInterface
+    private interface StoreLoader {
+        void load() throws IOException;
+    }
+}
@@ -0,0 +1,36 @@
+package ee.fujitsu.movieapi.db.scheduling;
+
+import ee.fujitsu.movieapi.db.repository.MovieRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.LocalDate;
+
+/**
+ * Moves movies to their next price class once a day, so that a long-running instance
+ * does not keep charging new movie prices for movies that have become regular or old.
+ */
+@Component
+public class MovieRepricingScheduler {
+    private static final Logger logger = LoggerFactory.getLogger(MovieRepricingScheduler.class);
+    private final MovieRepository movieRepository;
+
+    public MovieRepricingScheduler(MovieRepository movieRepository) {
+        this.movieRepository = movieRepository;
+    }
+
+    @Scheduled(cron = "${db.repricingCron:0 5 0 * * *}")
+    public void repriceMovies() {
+        try {
+            int repriced = movieRepository.repriceMovies(LocalDate.now());
+            if (repriced > 0) {
+                logger.info("Repriced " + repriced + " movies, catalog version " + movieRepository.getCatalogVersion());
+            }
+        } catch (IOException e) {
+            logger.error("Unable to persist repriced movies: " + e.getMessage());
+        }
+    }
+}
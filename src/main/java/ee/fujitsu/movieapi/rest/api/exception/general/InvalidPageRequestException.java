@@ -0,0 +1,7 @@
+package ee.fujitsu.movieapi.rest.api.exception.general;
+
+public class InvalidPageRequestException extends Exception{
+    public InvalidPageRequestException(String message){
+        super(message);
+    }
+}
@@ -0,0 +1,8 @@
+package ee.fujitsu.movieapi.rest.api.exception.order;
+
+public class OrderValidationException extends Exception{
+
+    public OrderValidationException(String message) {
+        super(message);
+    }
+}
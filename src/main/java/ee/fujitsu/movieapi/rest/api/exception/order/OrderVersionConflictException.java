@@ -0,0 +1,7 @@
+package ee.fujitsu.movieapi.rest.api.exception.order;
+
+public class OrderVersionConflictException extends Exception{
+    public OrderVersionConflictException(){
+        super("The order was modified concurrently, please retry.");
+    }
+}
@@ -0,0 +1,22 @@
+package ee.fujitsu.movieapi.rest.api.response;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import ee.fujitsu.movieapi.db.model.statistics.MetadataCacheStatistics;
+
+import javax.validation.constraints.NotNull;
+
+@JsonIgnoreProperties
+@JsonInclude( JsonInclude.Include.NON_NULL )
+public class MetadataCacheStatisticsApiResponse extends AbstractResponse{
+    @NotNull
+    private MetadataCacheStatistics cacheStatistics;
+
+    public MetadataCacheStatistics getCacheStatistics() {
+        return cacheStatistics;
+    }
+
+    public void setCacheStatistics(MetadataCacheStatistics cacheStatistics) {
+        this.cacheStatistics = cacheStatistics;
+    }
+}
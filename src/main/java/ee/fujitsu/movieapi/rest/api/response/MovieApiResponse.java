@@ -14,6 +14,8 @@ public class MovieApiResponse extends AbstractResponse{
     @JsonProperty
     @NotNull
     List<Movie> data;
+    @JsonProperty
+    String nextCursor;
 
     public MovieApiResponse() {
 
@@ -27,11 +29,23 @@ public class MovieApiResponse extends AbstractResponse{
         this.data = data;
     }
 
+    /**
+     * Cursor of the next page, null on the last page or if the response is not paginated
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
     @Override
     public String toString() {
         return MoreObjects.toStringHelper( this ).omitNullValues()
                 .addValue(super.toString())
                 .add("movieData", data)
+                .add("nextCursor", nextCursor)
                 .toString();
     }
 }
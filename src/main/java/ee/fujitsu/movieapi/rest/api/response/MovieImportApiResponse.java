@@ -0,0 +1,48 @@
+package ee.fujitsu.movieapi.rest.api.response;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.google.common.base.MoreObjects;
+
+import java.util.List;
+
+@JsonIgnoreProperties
+@JsonInclude( JsonInclude.Include.NON_NULL )
+public class MovieImportApiResponse extends AbstractResponse{
+    private int added;
+    private int rejected;
+    private List<MovieImportResult> results;
+
+    public int getAdded() {
+        return added;
+    }
+
+    public void setAdded(int added) {
+        this.added = added;
+    }
+
+    public int getRejected() {
+        return rejected;
+    }
+
+    public void setRejected(int rejected) {
+        this.rejected = rejected;
+    }
+
+    public List<MovieImportResult> getResults() {
+        return results;
+    }
+
+    public void setResults(List<MovieImportResult> results) {
+        this.results = results;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper( this ).omitNullValues()
+                .addValue(super.toString())
+                .add("added", added)
+                .add("rejected", rejected)
+                .toString();
+    }
+}
@@ -0,0 +1,62 @@
+package ee.fujitsu.movieapi.rest.api.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Outcome of importing one row of a bulk movie import
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class MovieImportResult {
+    public enum Status {
+        ADDED,
+        DUPLICATE,
+        INVALID
+    }
+
+    private int row;
+    private String imdbId;
+    private Status status;
+    private String message;
+
+    public MovieImportResult() {
+    }
+
+    public MovieImportResult(int row, String imdbId, Status status, String message) {
+        this.row = row;
+        this.imdbId = imdbId;
+        this.status = status;
+        this.message = message;
+    }
+
+    public int getRow() {
+        return row;
+    }
+
+    public void setRow(int row) {
+        this.row = row;
+    }
+
+    public String getImdbId() {
+        return imdbId;
+    }
+
+    public void setImdbId(String imdbId) {
+        this.imdbId = imdbId;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+}
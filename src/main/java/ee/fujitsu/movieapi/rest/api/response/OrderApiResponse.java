@@ -15,6 +15,8 @@ public class OrderApiResponse extends AbstractResponse{
     @JsonProperty
     @NotNull
     List<Order> data;
+    @JsonProperty
+    String nextCursor;
 
     public OrderApiResponse() {
 
@@ -28,11 +30,23 @@ public class OrderApiResponse extends AbstractResponse{
         this.data = data;
     }
 
+    /**
+     * Cursor of the next page, null on the last page or if the response is not paginated
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
     @Override
     public String toString() {
         return MoreObjects.toStringHelper( this ).omitNullValues()
                 .addValue(super.toString())
                 .add("orderData", data)
+                .add("nextCursor", nextCursor)
                 .toString();
     }
 }
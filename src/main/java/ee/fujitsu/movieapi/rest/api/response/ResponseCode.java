@@ -3,5 +3,6 @@ package ee.fujitsu.movieapi.rest.api.response;
 public enum ResponseCode {
     OK,
     INVALID_REQUEST,
+    CONFLICT,
     SYSTEM_ERROR
 }
@@ -0,0 +1,46 @@
+package ee.fujitsu.movieapi.rest.cache;
+
+/**
+ * Serialized response body with its strong entity tag
+ */
+public class CachedResponse {
+    private final byte[] body;
+    private final String eTag;
+
+    public CachedResponse(byte[] body, String eTag) {
+        this.body = body;
+        this.eTag = eTag;
+    }
+
+    /**
+     * Returns the serialized body. The array is shared and must not be modified.
+     *
+     * @return body
+     */
+    public byte[] getBody() {
+        return body;
+    }
+
+    public String getETag() {
+        return eTag;
+    }
+
+    /**
+     * Checks whether an If-None-Match header value matches this response
+     *
+     * @param ifNoneMatch header value, a list of entity tags or *
+     * @return true if the client already has this response
+     */
+    public boolean matches(String ifNoneMatch) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String tag : ifNoneMatch.split(",")) {
+            tag = tag.trim();
+            if (tag.equals("*") || tag.equals(eTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
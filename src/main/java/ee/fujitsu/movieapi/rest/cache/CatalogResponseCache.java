@@ -0,0 +1,93 @@
+package ee.fujitsu.movieapi.rest.cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import ee.fujitsu.movieapi.db.configuration.ApiConfiguration;
+import ee.fujitsu.movieapi.db.repository.MovieRepository;
+import org.springframework.stereotype.Component;
+
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Keeps serialized catalog read responses, keyed by catalog version and query, so that repeated reads
+ * of an unchanged catalog skip serialization. Entries of older versions are dropped whenever
+ * the movie repository publishes a new catalog. The cache is bounded by the total size of the bodies.
+ */
+@Component
+public class CatalogResponseCache {
+    private final ObjectMapper objectMapper;
+    private final Cache<Key, CachedResponse> cache;
+
+    public CatalogResponseCache(ApiConfiguration apiConfiguration, ObjectMapper objectMapper,
+                                MovieRepository movieRepository) {
+        this.objectMapper = objectMapper;
+        this.cache = CacheBuilder.newBuilder()
+                .maximumWeight(apiConfiguration.getResponseCacheMaxBytes())
+                .<Key, CachedResponse>weigher((key, response) -> response.getBody().length)
+                .build();
+        movieRepository.addCatalogListener(catalog -> cache.invalidateAll());
+    }
+
+    /**
+     * Returns the serialized response of the query on the catalog version, building and serializing it on a miss.
+     * Concurrent misses of the same query share one serialization.
+     *
+     * @param catalogVersion version of the catalog snapshot the response is built from
+     * @param query          query the response answers, including its parameters
+     * @param response       builds the response object on a miss
+     * @return serialized response with entity tag
+     */
+    public CachedResponse get(long catalogVersion, String query, Supplier<Object> response) {
+        try {
+            return cache.get(new Key(catalogVersion, query), () -> serialize(response.get()));
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            throw new IllegalStateException("Unable to serialize response", e.getCause());
+        }
+    }
+
+    /**
+     * Drops all cached responses
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    private CachedResponse serialize(Object response) throws JsonProcessingException {
+        byte[] body = objectMapper.writeValueAsBytes(response);
+        String eTag = "\"" + Hashing.murmur3_128().hashBytes(body) + "\"";
+        return new CachedResponse(body, eTag);
+    }
+
+    private static final class Key {
+        private final long catalogVersion;
+        private final String query;
+
+        private Key(long catalogVersion, String query) {
+            this.catalogVersion = catalogVersion;
+            this.query = query;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return catalogVersion == key.catalogVersion && query.equals(key.query);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(catalogVersion, query);
+        }
+    }
+}
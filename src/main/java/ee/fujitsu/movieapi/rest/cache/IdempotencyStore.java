@@ -0,0 +1,156 @@
+package ee.fujitsu.movieapi.rest.cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
+import ee.fujitsu.movieapi.db.configuration.ApiConfiguration;
+import ee.fujitsu.movieapi.rest.api.response.AbstractResponse;
+import ee.fujitsu.movieapi.rest.api.response.GeneralApiResponse;
+import ee.fujitsu.movieapi.rest.api.response.ResponseCode;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Remembers the responses of recent requests sent with an Idempotency-Key header, so that a retried request
+ * gets the original response instead of being executed again. Concurrent requests with the same key
+ * wait for the first one. Responses are kept serialized, the store is bounded by their total size
+ * and entries expire after the configured time.
+ */
+@Component
+public class IdempotencyStore {
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+    public static final int MAX_KEY_LENGTH = 255;
+
+    private final ObjectMapper objectMapper;
+    private final Cache<String, StoredResponse> completed;
+    private final ConcurrentMap<String, CompletableFuture<Void>> inFlight = new ConcurrentHashMap<>();
+
+    public IdempotencyStore(ApiConfiguration apiConfiguration, ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+        this.completed = CacheBuilder.newBuilder()
+                .maximumWeight(apiConfiguration.getIdempotencyMaxBytes())
+                .<String, StoredResponse>weigher((key, response) -> key.length() * 2 + response.body.length)
+                .expireAfterWrite(apiConfiguration.getIdempotencyTtlMinutes(), TimeUnit.MINUTES)
+                .build();
+    }
+
+    /**
+     * Executes the action once per idempotency key. Repeated requests with the same key get the stored
+     * response of the first one. Only successful responses, with the OK response code, are stored:
+     * a failed request can be retried, and requests waiting for it execute on their own.
+     *
+     * @param operation      operation the key belongs to, keys of different operations do not collide
+     * @param idempotencyKey Idempotency-Key header value, or null to execute the action without storing it
+     * @param request        request data, a stored response is only returned for the same request data
+     * @param action         executes the request
+     * @return response of the action, or the stored response of an earlier request with the same key
+     */
+    public ResponseEntity<?> execute(String operation, String idempotencyKey, Object request,
+                                     Supplier<ResponseEntity<?>> action) {
+        if (idempotencyKey == null) {
+            return action.get();
+        }
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_KEY_LENGTH) {
+            GeneralApiResponse response = new GeneralApiResponse(ResponseCode.INVALID_REQUEST,
+                    IDEMPOTENCY_KEY_HEADER + " should be 1 to " + MAX_KEY_LENGTH + " characters long.");
+            return new ResponseEntity<>(response, HttpStatus.BAD_REQUEST);
+        }
+        String key = operation + " " + idempotencyKey;
+        String fingerprint = fingerprint(request);
+
+        while (true) {
+            StoredResponse stored = completed.getIfPresent(key);
+            if (stored != null) {
+                return replay(stored, fingerprint);
+            }
+            CompletableFuture<Void> own = new CompletableFuture<>();
+            CompletableFuture<Void> running = inFlight.putIfAbsent(key, own);
+            if (running != null) {
+                // Wait for the first request, then replay its stored response or, if it failed, execute this one
+                running.join();
+                continue;
+            }
+            try {
+                stored = completed.getIfPresent(key);
+                if (stored != null) {
+                    return replay(stored, fingerprint);
+                }
+                ResponseEntity<?> response = action.get();
+                if (isSuccessful(response)) {
+                    completed.put(key, new StoredResponse(fingerprint, response.getStatusCode(),
+                            serialize(response.getBody())));
+                }
+                return response;
+            } finally {
+                inFlight.remove(key, own);
+                own.complete(null);
+            }
+        }
+    }
+
+    /**
+     * Drops all stored responses
+     */
+    public void invalidateAll() {
+        completed.invalidateAll();
+    }
+
+    private ResponseEntity<?> replay(StoredResponse stored, String fingerprint) {
+        if (!stored.fingerprint.equals(fingerprint)) {
+            GeneralApiResponse response = new GeneralApiResponse(ResponseCode.INVALID_REQUEST,
+                    IDEMPOTENCY_KEY_HEADER + " was already used with a different request.");
+            return new ResponseEntity<>(response, HttpStatus.UNPROCESSABLE_ENTITY);
+        }
+        return ResponseEntity.status(stored.status)
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(REPLAYED_HEADER, "true")
+                .body(stored.body);
+    }
+
+    /**
+     * Failures are answered with HTTP 200 too, so only a response with the OK response code is a success
+     *
+     * @param response response of the action
+     * @return true if the response should be stored
+     */
+    private static boolean isSuccessful(ResponseEntity<?> response) {
+        return response.getStatusCode().is2xxSuccessful()
+                && response.getBody() instanceof AbstractResponse
+                && ((AbstractResponse) response.getBody()).getResponseCode() == ResponseCode.OK;
+    }
+
+    private String fingerprint(Object request) {
+        return Hashing.murmur3_128().hashBytes(serialize(request)).toString();
+    }
+
+    private byte[] serialize(Object value) {
+        try {
+            return objectMapper.writeValueAsBytes(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unable to serialize idempotent request", e);
+        }
+    }
+
+    private static final class StoredResponse {
+        private final String fingerprint;
+        private final HttpStatus status;
+        private final byte[] body;
+
+        private StoredResponse(String fingerprint, HttpStatus status, byte[] body) {
+            this.fingerprint = fingerprint;
+            this.status = status;
+            this.body = body;
+        }
+    }
+}
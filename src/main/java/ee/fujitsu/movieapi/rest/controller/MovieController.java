@@ -1,51 +1,132 @@
 package ee.fujitsu.movieapi.rest.controller;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import ee.fujitsu.movieapi.rest.api.exception.movie.MovieIdNotUniqueException;
+import ee.fujitsu.movieapi.rest.api.exception.general.InvalidPageRequestException;
 import ee.fujitsu.movieapi.rest.api.exception.general.NotFoundException;
+import ee.fujitsu.movieapi.db.metadata.MovieMetadataService;
 import ee.fujitsu.movieapi.db.model.movie.Movie;
+import ee.fujitsu.movieapi.db.repository.MovieCatalog;
+import ee.fujitsu.movieapi.db.repository.MovieCategoryIndex;
 import ee.fujitsu.movieapi.db.repository.MovieRepository;
 import ee.fujitsu.movieapi.rest.api.exception.movie.MovieValidationException;
+import ee.fujitsu.movieapi.rest.cache.CachedResponse;
+import ee.fujitsu.movieapi.rest.cache.CatalogResponseCache;
 import ee.fujitsu.movieapi.rest.api.response.GeneralApiResponse;
+import ee.fujitsu.movieapi.rest.api.response.MetadataCacheStatisticsApiResponse;
 import ee.fujitsu.movieapi.rest.api.response.MovieApiResponse;
+import ee.fujitsu.movieapi.rest.api.response.MovieImportApiResponse;
+import ee.fujitsu.movieapi.rest.api.response.MovieImportResult;
 import ee.fujitsu.movieapi.rest.api.response.ResponseCode;
 import ee.fujitsu.movieapi.rest.controller.utils.MovieUtils;
+import ee.fujitsu.movieapi.rest.controller.utils.NdjsonUtils;
+import ee.fujitsu.movieapi.rest.controller.utils.PaginationUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import javax.validation.constraints.Null;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping(path = "/movies")
 public class MovieController {
+    /**
+     * Version of the catalog snapshot the response was built from
+     */
+    public static final String CATALOG_VERSION_HEADER = "X-Catalog-Version";
     private static final Logger logger = LoggerFactory.getLogger(MovieController.class);
     private final MovieRepository movieRepository;
+    private final MovieMetadataService metadataService;
+    private final ObjectMapper objectMapper;
+    private final CatalogResponseCache responseCache;
 
-    public MovieController(MovieRepository movieRepository) {
+    public MovieController(MovieRepository movieRepository, MovieMetadataService metadataService,
+                           ObjectMapper objectMapper, CatalogResponseCache responseCache) {
         this.movieRepository = movieRepository;
+        this.metadataService = metadataService;
+        this.objectMapper = objectMapper;
+        this.responseCache = responseCache;
     }
 
     /**
-     * Gets all movies
+     * Gets all movies, or a page of movies in imdb id order if limit or cursor is given
      *
+     * @param limit       page size, 1 to PaginationUtils.MAX_LIMIT
+     * @param cursor      nextCursor of the previous page
+     * @param ifNoneMatch ETag of a previously received response
      * @return a response entity with list of all movies
-     * or http 204 noContent if list is empty
+     * or http 304 notModified if the client already has the response
      */
     @RequestMapping(value = "", method = RequestMethod.GET, produces="application/json")
-    public ResponseEntity<?> findAll() {
-        List<Movie> movies = movieRepository.findAll();
-        if (movies.size() > 0) {
-            MovieApiResponse response = new MovieApiResponse();
-            response.setData(movies);
-            response.setResponseCode(ResponseCode.OK);
-            return new ResponseEntity<>(response, HttpStatus.OK);
-        } else {
-            GeneralApiResponse response = new GeneralApiResponse(ResponseCode.OK, "Movies not found");
+    public ResponseEntity<?> findAll(@RequestParam(required = false) Integer limit,
+                                     @RequestParam(required = false) String cursor,
+                                     @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        MovieCatalog catalog = movieRepository.getCatalog();
+        if (limit != null || cursor != null) {
+            return findPage(catalog, limit, cursor, ifNoneMatch);
+        }
+        return cachedResponse(catalog, "all", ifNoneMatch, () -> {
+            List<Movie> movies = catalog.getMovies();
+            if (movies.size() > 0) {
+                MovieApiResponse response = new MovieApiResponse();
+                response.setData(movies);
+                response.setResponseCode(ResponseCode.OK);
+                return response;
+            } else {
+                return new GeneralApiResponse(ResponseCode.OK, "Movies not found");
+            }
+        });
+    }
+
+    /**
+     * Streams all movies of the current catalog snapshot as newline delimited json, one movie per line
+     *
+     * @return streaming response with the catalog version header
+     */
+    @RequestMapping(value = "/export", method = RequestMethod.GET, produces = NdjsonUtils.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportMovies() {
+        MovieCatalog catalog = movieRepository.getCatalog();
+        return ResponseEntity.ok()
+                .headers(versionHeader(catalog))
+                .contentType(NdjsonUtils.APPLICATION_NDJSON)
+                .body(NdjsonUtils.stream(objectMapper, Movie.class, catalog.getMovies()));
+    }
+
+    private ResponseEntity<?> findPage(MovieCatalog catalog, Integer limit, String cursor, String ifNoneMatch) {
+        try {
+            int pageSize = PaginationUtils.resolveLimit(limit);
+            String afterId = PaginationUtils.decodeCursor(cursor);
+            return cachedResponse(catalog, "page:" + pageSize + ":" + afterId, ifNoneMatch, () -> {
+                List<Movie> movies = catalog.findPage(afterId, pageSize + 1);
+                MovieApiResponse response = new MovieApiResponse();
+                if (movies.size() > pageSize) {
+                    movies = movies.subList(0, pageSize);
+                    response.setNextCursor(PaginationUtils.encodeCursor(movies.get(pageSize - 1).getImdbId()));
+                }
+                response.setData(movies);
+                response.setResponseCode(ResponseCode.OK);
+                return response;
+            });
+
+        } catch (InvalidPageRequestException e) {
+            GeneralApiResponse response = new GeneralApiResponse(ResponseCode.INVALID_REQUEST, e.getMessage());
             return new ResponseEntity<>(response, HttpStatus.OK);
         }
     }
@@ -71,6 +152,75 @@ public class MovieController {
         }
     }
 
+    /**
+     * Imports movies from a json array in the request body. The array is read element by element,
+     * every row is validated on its own, and all accepted movies are added as one change and persisted once.
+     *
+     * @param body json array of movies
+     * @return ResponseEntity with the outcome of every row
+     */
+    @RequestMapping(value="/bulk", method = RequestMethod.POST, consumes="application/json", produces = "application/json")
+    public ResponseEntity<?> importMovies(InputStream body) {
+        List<MovieImportResult> results = new ArrayList<>();
+        List<Movie> candidates = new ArrayList<>();
+        Map<String, MovieImportResult> pendingById = new HashMap<>();
+        try (JsonParser parser = objectMapper.getFactory().createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new MovieValidationException("Request body should be a json array of movies");
+            }
+            JsonToken token;
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                if (token == null) {
+                    throw new MovieValidationException("Unexpected end of the movie array");
+                }
+                JsonNode node = parser.readValueAsTree();
+                MovieImportResult result = new MovieImportResult();
+                result.setRow(results.size());
+                results.add(result);
+                try {
+                    Movie movie = objectMapper.treeToValue(node, Movie.class);
+                    result.setImdbId(movie.getImdbId());
+                    MovieUtils.checkNecessaryFieldsPresent(movie);
+                    if (pendingById.putIfAbsent(movie.getImdbId(), result) != null) {
+                        result.setStatus(MovieImportResult.Status.DUPLICATE);
+                        result.setMessage("Imdb id is repeated in the request");
+                    } else {
+                        candidates.add(movie);
+                    }
+                } catch (JsonProcessingException | MovieValidationException e) {
+                    result.setStatus(MovieImportResult.Status.INVALID);
+                    result.setMessage(e.getMessage());
+                }
+            }
+        } catch (IOException | MovieValidationException e) {
+            GeneralApiResponse response = new GeneralApiResponse(ResponseCode.INVALID_REQUEST, e.getMessage());
+            return new ResponseEntity<>(response, HttpStatus.BAD_REQUEST);
+        }
+
+        List<Movie> added;
+        try {
+            added = movieRepository.addAll(candidates);
+        } catch (IOException e) {
+            GeneralApiResponse response = new GeneralApiResponse(ResponseCode.SYSTEM_ERROR, e.getMessage());
+            return new ResponseEntity<>(response, HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+        for (Movie movie : added) {
+            pendingById.remove(movie.getImdbId()).setStatus(MovieImportResult.Status.ADDED);
+        }
+        for (MovieImportResult result : pendingById.values()) {
+            result.setStatus(MovieImportResult.Status.DUPLICATE);
+            result.setMessage("Movie with this imdb id already exists");
+        }
+
+        MovieImportApiResponse response = new MovieImportApiResponse();
+        response.setResponseCode(ResponseCode.OK);
+        response.setMessage("Movies imported.");
+        response.setAdded(added.size());
+        response.setRejected(results.size() - added.size());
+        response.setResults(results);
+        return new ResponseEntity<>(response, HttpStatus.OK);
+    }
+
     /**
      * Deletes all movies with specified id
      *
@@ -117,46 +267,116 @@ public class MovieController {
         }
     }
 
+    /**
+     * Returns all movies that are in all or in any of the specified categories
+     *
+     * @param categories  comma separated category names
+     * @param match       "all" to require every category, "any" to require at least one
+     * @param ifNoneMatch ETag of a previously received response
+     * @return ResponseEntity with movies of these categories
+     */
+    @RequestMapping(value="/search", method = RequestMethod.GET, produces = "application/json")
+    public ResponseEntity<?> findMoviesByCategories(@RequestParam List<String> categories,
+                                                    @RequestParam(defaultValue = "any") String match,
+                                                    @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        MovieCatalog catalog = movieRepository.getCatalog();
+        boolean matchAll = match.equalsIgnoreCase("all");
+        String query = "search:" + (matchAll ? "all" : "any") + ":" + categories.stream()
+                .map(MovieCategoryIndex::normalize).sorted().distinct().collect(Collectors.joining(","));
+        return cachedResponse(catalog, query, ifNoneMatch, () -> {
+            try {
+                MovieApiResponse response = new MovieApiResponse();
+                response.setData(movieRepository.findMoviesByCategories(catalog, categories, matchAll));
+                response.setResponseCode(ResponseCode.OK);
+                return response;
+
+            } catch (NotFoundException e) {
+                return new GeneralApiResponse(ResponseCode.OK, e.getMessage());
+            }
+        });
+    }
+
     /**
      * Returns all movies where categories set contains the specified category
      *
-     * @param category
+     * @param category    category name
+     * @param ifNoneMatch ETag of a previously received response
      * @return ResponseEntity with movies of that category
      */
     @RequestMapping(value="/{category}", method = RequestMethod.GET, produces = "application/json")
-    public ResponseEntity<?> findMoviesByCategory(@PathVariable String category) {
-        category = category.trim().toLowerCase(Locale.ROOT);
-        try {
-            MovieApiResponse response = new MovieApiResponse();
-            response.setData(movieRepository.findMoviesByCategory(category));
-            response.setResponseCode(ResponseCode.OK);
-            return new ResponseEntity<>(response, HttpStatus.OK);
+    public ResponseEntity<?> findMoviesByCategory(@PathVariable String category,
+                                                  @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        String normalizedCategory = MovieCategoryIndex.normalize(category);
+        MovieCatalog catalog = movieRepository.getCatalog();
+        return cachedResponse(catalog, "category:" + normalizedCategory, ifNoneMatch, () -> {
+            try {
+                MovieApiResponse response = new MovieApiResponse();
+                response.setData(movieRepository.findMoviesByCategory(catalog, normalizedCategory));
+                response.setResponseCode(ResponseCode.OK);
+                return response;
 
-        } catch (NotFoundException e) {
-            GeneralApiResponse response = new GeneralApiResponse(ResponseCode.OK, e.getMessage());
-            return new ResponseEntity<>(response, HttpStatus.OK);
-        }
+            } catch (NotFoundException e) {
+                return new GeneralApiResponse(ResponseCode.OK, e.getMessage());
+            }
+        });
     }
 
     /**
-     * Returns a movie with the specified imdbID
+     * Shows hit, miss and eviction counters of the omdbApi metadata cache
+     *
+     * @return ResponseEntity with cache statistics
+     */
+    @RequestMapping(value="/metadata/stats", method = RequestMethod.GET, produces = "application/json")
+    public ResponseEntity<?> findMetadataCacheStatistics() {
+        MetadataCacheStatisticsApiResponse response = new MetadataCacheStatisticsApiResponse();
+        response.setCacheStatistics(metadataService.getStatistics());
+        response.setResponseCode(ResponseCode.OK);
+        return new ResponseEntity<>(response, HttpStatus.OK);
+    }
+
+    /**
+     * Returns a movie with the specified imdbID.
+     * The worker thread is released while metadata is fetched from omdbApi.
      *
      * @param id imdbID
      * @return movie with the specified imdbID
      */
     @RequestMapping(value="/id/{id}", method = RequestMethod.GET, produces = "application/json")
-    public ResponseEntity<?> findMovieById(@PathVariable String id) {
+    public CompletableFuture<ResponseEntity<?>> findMovieById(@PathVariable String id) {
         try {
-            MovieApiResponse response = new MovieApiResponse();
-            response.setResponseCode(ResponseCode.OK);
-            response.setMessage("Movie found.");
-            response.setData(List.of(movieRepository.findById(id)));
-            return new ResponseEntity<>(response, HttpStatus.OK);
+            return movieRepository.findByIdAsync(id).thenApply(movie -> {
+                MovieApiResponse response = new MovieApiResponse();
+                response.setResponseCode(ResponseCode.OK);
+                response.setMessage("Movie found.");
+                response.setData(List.of(movie));
+                return new ResponseEntity<>(response, HttpStatus.OK);
+            });
 
         } catch (NotFoundException e) {
             GeneralApiResponse response = new GeneralApiResponse(ResponseCode.OK, e.getMessage());
-            return new ResponseEntity<>(response, HttpStatus.OK);
+            return CompletableFuture.completedFuture(new ResponseEntity<>(response, HttpStatus.OK));
         }
     }
 
+    /**
+     * Answers a catalog read from the response cache. Responses the client already has are answered
+     * with 304 and no body.
+     */
+    private ResponseEntity<byte[]> cachedResponse(MovieCatalog catalog, String query, String ifNoneMatch,
+                                                  Supplier<Object> response) {
+        CachedResponse cached = responseCache.get(catalog.getVersion(), query, response);
+        HttpHeaders headers = versionHeader(catalog);
+        headers.setETag(cached.getETag());
+        if (cached.matches(ifNoneMatch)) {
+            return new ResponseEntity<>(headers, HttpStatus.NOT_MODIFIED);
+        }
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        return new ResponseEntity<>(cached.getBody(), headers, HttpStatus.OK);
+    }
+
+    private static HttpHeaders versionHeader(MovieCatalog catalog) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(CATALOG_VERSION_HEADER, String.valueOf(catalog.getVersion()));
+        return headers;
+    }
 }
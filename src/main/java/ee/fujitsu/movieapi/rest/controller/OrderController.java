@@ -1,46 +1,74 @@
 package ee.fujitsu.movieapi.rest.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.Iterables;
 import ee.fujitsu.movieapi.db.model.movie.Movie;
+import ee.fujitsu.movieapi.db.model.movie.MoviePriceClass;
 import ee.fujitsu.movieapi.db.model.order.Order;
 import ee.fujitsu.movieapi.db.model.order.OrderItem;
 import ee.fujitsu.movieapi.db.model.order.OrderStatus;
 import ee.fujitsu.movieapi.db.model.statistics.OrderStatistics;
 import ee.fujitsu.movieapi.db.repository.MovieRepository;
 import ee.fujitsu.movieapi.db.repository.OrderRepository;
+import ee.fujitsu.movieapi.rest.api.exception.general.InvalidPageRequestException;
 import ee.fujitsu.movieapi.rest.api.exception.general.NotFoundException;
 import ee.fujitsu.movieapi.rest.api.exception.order.OrderAlreadyClosedException;
+import ee.fujitsu.movieapi.rest.api.exception.order.OrderValidationException;
+import ee.fujitsu.movieapi.rest.api.exception.order.OrderVersionConflictException;
 import ee.fujitsu.movieapi.rest.api.response.GeneralApiResponse;
 import ee.fujitsu.movieapi.rest.api.response.OrderApiResponse;
 import ee.fujitsu.movieapi.rest.api.response.OrderStatisticsApiResponse;
 import ee.fujitsu.movieapi.rest.api.response.ResponseCode;
+import ee.fujitsu.movieapi.rest.cache.IdempotencyStore;
+import ee.fujitsu.movieapi.rest.controller.utils.NdjsonUtils;
+import ee.fujitsu.movieapi.rest.controller.utils.PaginationUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.IOException;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
 
 @RestController
 @RequestMapping(path = "/orders")
 public class OrderController {
     private final OrderRepository orderRepository;
     private final MovieRepository movieRepository;
+    private final ObjectMapper objectMapper;
+    private final IdempotencyStore idempotencyStore;
 
     @Autowired
-    public OrderController(OrderRepository orderRepository, MovieRepository movieRepository) {
+    public OrderController(OrderRepository orderRepository, MovieRepository movieRepository, ObjectMapper objectMapper,
+                           IdempotencyStore idempotencyStore) {
         this.orderRepository = orderRepository;
         this.movieRepository = movieRepository;
+        this.objectMapper = objectMapper;
+        this.idempotencyStore = idempotencyStore;
     }
 
     /**
-     * Returns all orders
+     * Returns all orders, or a page of orders in orderId order if limit or cursor is given
      *
+     * @param limit  page size, 1 to PaginationUtils.MAX_LIMIT
+     * @param cursor nextCursor of the previous page
      * @return Response entity with all orders and status
      */
     @RequestMapping(value = "", method = RequestMethod.GET, produces = "application/json")
-    public ResponseEntity<?> findAll() {
+    public ResponseEntity<?> findAll(@RequestParam(required = false) Integer limit,
+                                     @RequestParam(required = false) String cursor) {
+        if (limit != null || cursor != null) {
+            return findPage(limit, cursor);
+        }
         List<Order> orders = orderRepository.findAll();
         OrderApiResponse response = new OrderApiResponse();
         response.setData(orders);
@@ -51,6 +79,152 @@ public class OrderController {
         return new ResponseEntity<>(response, HttpStatus.OK);
     }
 
+    /**
+     * Streams orders as newline delimited json, one order per line, in orderId order
+     *
+     * @param since if given, only orders with a timestamp at or after it are exported
+     * @return streaming response
+     */
+    @RequestMapping(value = "/export", method = RequestMethod.GET, produces = NdjsonUtils.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportOrders(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime since) {
+        Iterable<Order> orders = orderRepository.iterateAll();
+        if (since != null) {
+            orders = Iterables.filter(orders, order -> order.getTimestamp() != null && !order.getTimestamp().isBefore(since));
+        }
+        return ResponseEntity.ok()
+                .contentType(NdjsonUtils.APPLICATION_NDJSON)
+                .body(NdjsonUtils.stream(objectMapper, Order.class, orders));
+    }
+
+    private ResponseEntity<?> findPage(Integer limit, String cursor) {
+        try {
+            int pageSize = PaginationUtils.resolveLimit(limit);
+            List<Order> orders = orderRepository.findPage(PaginationUtils.decodeCursor(cursor), pageSize + 1);
+            return orderPage(orders, pageSize, Order::getOrderId);
+
+        } catch (InvalidPageRequestException e) {
+            GeneralApiResponse response = new GeneralApiResponse(ResponseCode.INVALID_REQUEST, e.getMessage());
+            return new ResponseEntity<>(response, HttpStatus.OK);
+        }
+    }
+
+    /**
+     * Returns orders containing the movie, a page at a time in orderId order
+     *
+     * @param movieId imdb id of the movie
+     * @param limit   page size, 1 to PaginationUtils.MAX_LIMIT
+     * @param cursor  nextCursor of the previous page
+     * @return Response entity with orders and status
+     */
+    @RequestMapping(value = "/movie/{movieId}", method = RequestMethod.GET, produces = "application/json")
+    public ResponseEntity<?> findByMovieId(@PathVariable String movieId,
+                                           @RequestParam(required = false) Integer limit,
+                                           @RequestParam(required = false) String cursor) {
+        try {
+            int pageSize = PaginationUtils.resolveLimit(limit);
+            List<Order> orders = orderRepository.findByMovieId(movieId, PaginationUtils.decodeCursor(cursor), pageSize + 1);
+            return orderPage(orders, pageSize, Order::getOrderId);
+
+        } catch (InvalidPageRequestException e) {
+            GeneralApiResponse response = new GeneralApiResponse(ResponseCode.INVALID_REQUEST, e.getMessage());
+            return new ResponseEntity<>(response, HttpStatus.OK);
+        }
+    }
+
+    /**
+     * Returns orders with the status, a page at a time in orderId order
+     *
+     * @param status OPEN or CLOSED
+     * @param limit  page size, 1 to PaginationUtils.MAX_LIMIT
+     * @param cursor nextCursor of the previous page
+     * @return Response entity with orders and status
+     */
+    @RequestMapping(value = "/status/{status}", method = RequestMethod.GET, produces = "application/json")
+    public ResponseEntity<?> findByStatus(@PathVariable String status,
+                                          @RequestParam(required = false) Integer limit,
+                                          @RequestParam(required = false) String cursor) {
+        try {
+            OrderStatus orderStatus = parseStatus(status);
+            int pageSize = PaginationUtils.resolveLimit(limit);
+            List<Order> orders = orderRepository.findByStatus(orderStatus, PaginationUtils.decodeCursor(cursor), pageSize + 1);
+            return orderPage(orders, pageSize, Order::getOrderId);
+
+        } catch (InvalidPageRequestException e) {
+            GeneralApiResponse response = new GeneralApiResponse(ResponseCode.INVALID_REQUEST, e.getMessage());
+            return new ResponseEntity<>(response, HttpStatus.OK);
+        }
+    }
+
+    /**
+     * Returns orders last changed within the period, a page at a time in timestamp order
+     *
+     * @param from   start of the period, inclusive
+     * @param to     end of the period, exclusive
+     * @param status if given, only orders with this status are returned
+     * @param limit  page size, 1 to PaginationUtils.MAX_LIMIT
+     * @param cursor nextCursor of the previous page
+     * @return Response entity with orders and status
+     */
+    @RequestMapping(value = "/between", method = RequestMethod.GET, produces = "application/json")
+    public ResponseEntity<?> findByTimestamp(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String cursor) {
+        try {
+            OrderStatus orderStatus = status == null ? null : parseStatus(status);
+            int pageSize = PaginationUtils.resolveLimit(limit);
+            LocalDateTime afterTimestamp = null;
+            String afterId = null;
+            String after = PaginationUtils.decodeCursor(cursor);
+            if (after != null) {
+                int separator = after.indexOf(' ');
+                try {
+                    afterTimestamp = LocalDateTime.parse(after.substring(0, Math.max(separator, 0)));
+                } catch (DateTimeParseException e) {
+                    throw new InvalidPageRequestException("Invalid cursor");
+                }
+                afterId = after.substring(separator + 1);
+            }
+            List<Order> orders = orderRepository.findByTimestamp(from, to, orderStatus, afterTimestamp, afterId,
+                    pageSize + 1);
+            return orderPage(orders, pageSize, order -> order.getTimestamp() + " " + order.getOrderId());
+
+        } catch (InvalidPageRequestException e) {
+            GeneralApiResponse response = new GeneralApiResponse(ResponseCode.INVALID_REQUEST, e.getMessage());
+            return new ResponseEntity<>(response, HttpStatus.OK);
+        }
+    }
+
+    /**
+     * Builds a page response from one order more than the page size, the extra order tells that there is a next page
+     *
+     * @param orders    orders of the page and possibly the first order of the next page
+     * @param pageSize  page size
+     * @param cursorKey position of an order in the order of the query
+     * @return Response entity with orders and status
+     */
+    private ResponseEntity<?> orderPage(List<Order> orders, int pageSize, Function<Order, String> cursorKey) {
+        OrderApiResponse response = new OrderApiResponse();
+        if (orders.size() > pageSize) {
+            orders = orders.subList(0, pageSize);
+            response.setNextCursor(PaginationUtils.encodeCursor(cursorKey.apply(orders.get(pageSize - 1))));
+        }
+        response.setData(orders);
+        response.setResponseCode(ResponseCode.OK);
+        return new ResponseEntity<>(response, HttpStatus.OK);
+    }
+
+    private static OrderStatus parseStatus(String status) throws InvalidPageRequestException {
+        try {
+            return OrderStatus.valueOf(status.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new InvalidPageRequestException("Unknown order status " + status);
+        }
+    }
+
     /**
      * Shows the statistics data
      *
@@ -58,7 +232,7 @@ public class OrderController {
      */
     @RequestMapping(value = "/stats", method = RequestMethod.GET, produces = "application/json")
     public ResponseEntity<?> findStatistics() {
-        OrderStatistics statistics = orderRepository.getStatistics();
+        OrderStatistics statistics = orderRepository.getStatistics().snapshot();
         OrderStatisticsApiResponse response = new OrderStatisticsApiResponse();
         response.setOrderStatistics(statistics);
         response.setResponseCode(ResponseCode.OK);
@@ -66,15 +240,22 @@ public class OrderController {
     }
 
     /**
-     * Creates a new order
+     * Creates a new order. A retried request with the same Idempotency-Key gets the original order.
      *
-     * @param orderItem OrderItem Body. Data needed - movieId, rentDurationInWeeks
+     * @param idempotencyKey optional Idempotency-Key header
+     * @param orderItem      OrderItem Body. Data needed - movieId, rentDurationInWeeks
      * @return ResponseEntity with order data and status code
      */
     @RequestMapping(value = "/new", method = RequestMethod.POST, consumes = "application/json", produces = "application/json")
-    public ResponseEntity<?> addOrder(@RequestBody OrderItem orderItem) {
+    public ResponseEntity<?> addOrder(
+            @RequestHeader(value = IdempotencyStore.IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+            @RequestBody OrderItem orderItem) {
+        return idempotencyStore.execute("POST /orders/new", idempotencyKey, orderItem, () -> createOrder(orderItem));
+    }
+
+    private ResponseEntity<?> createOrder(OrderItem orderItem) {
         try {
-            Movie movie = movieRepository.findById(orderItem.getMovieId());
+            Movie movie = movieRepository.findLocalById(orderItem.getMovieId());
 
             orderItem.setCurrentPricePerWeek(movie.getPrice());
             orderItem.setMovieReleaseDate(movie.getReleaseDate());
@@ -92,12 +273,130 @@ public class OrderController {
             response.setData(List.of(order));
             return new ResponseEntity<>(response, HttpStatus.OK);
 
-        } catch (IOException | NotFoundException e) {
+        } catch (NotFoundException e) {
             GeneralApiResponse response = new GeneralApiResponse(ResponseCode.INVALID_REQUEST, e.getMessage());
             return new ResponseEntity<>(response, HttpStatus.OK);
+        } catch (IOException e) {
+            GeneralApiResponse response = new GeneralApiResponse(ResponseCode.SYSTEM_ERROR, e.getMessage());
+            return new ResponseEntity<>(response, HttpStatus.INTERNAL_SERVER_ERROR);
         }
     }
 
+    /**
+     * Creates a new order with several items. All movies are resolved from one catalog snapshot and all items
+     * are priced before anything is stored, so either the whole order is created with a single write or
+     * nothing is. A retried request with the same Idempotency-Key gets the original order.
+     *
+     * @param idempotencyKey optional Idempotency-Key header
+     * @param orderItems     OrderItem list. Data needed for every item - movieId, rentDurationInWeeks
+     * @return ResponseEntity with order data and status code
+     */
+    @RequestMapping(value = "/new/batch", method = RequestMethod.POST, consumes = "application/json", produces = "application/json")
+    public ResponseEntity<?> addBatchOrder(
+            @RequestHeader(value = IdempotencyStore.IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+            @RequestBody List<OrderItem> orderItems) {
+        return idempotencyStore.execute("POST /orders/new/batch", idempotencyKey, orderItems,
+                () -> createBatchOrder(orderItems));
+    }
+
+    private ResponseEntity<?> createBatchOrder(List<OrderItem> orderItems) {
+        try {
+            Order order = new Order(priceOrderItems(orderItems));
+            order.generateOrderId();
+            order.calculateTotalPrice();
+            orderRepository.add(order);
+
+            OrderApiResponse response = new OrderApiResponse();
+            response.setResponseCode(ResponseCode.OK);
+            response.setMessage("Order created.");
+            response.setData(List.of(order));
+            return new ResponseEntity<>(response, HttpStatus.OK);
+
+        } catch (OrderValidationException e) {
+            GeneralApiResponse response = new GeneralApiResponse(ResponseCode.INVALID_REQUEST, e.getMessage());
+            return new ResponseEntity<>(response, HttpStatus.OK);
+        } catch (IOException e) {
+            GeneralApiResponse response = new GeneralApiResponse(ResponseCode.SYSTEM_ERROR, e.getMessage());
+            return new ResponseEntity<>(response, HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    /**
+     * Adds several orderItems to an existing order with a single update. If any item is invalid,
+     * the order is left unchanged.
+     *
+     * @param orderId    Id of existing order
+     * @param orderItems New orderItems
+     * @return ResponseEntity with order data and status code
+     */
+    @RequestMapping(value = "/extend/{orderId}/batch", method = RequestMethod.POST, consumes = "application/json"
+            , produces = "application/json")
+    public ResponseEntity<?> addBatchToOrder(@PathVariable String orderId, @RequestBody List<OrderItem> orderItems) {
+        try {
+            List<OrderItem> pricedItems = priceOrderItems(orderItems);
+
+            Order order = orderRepository.findById(orderId);
+            if (order.getOrderStatus().equals(OrderStatus.CLOSED)) {
+                throw new OrderAlreadyClosedException();
+            }
+            order.getOrderItemList().addAll(pricedItems);
+            order.calculateTotalPrice();
+            order.setTimestamp(LocalDateTime.now());
+            orderRepository.update(order);
+
+            OrderApiResponse response = new OrderApiResponse();
+            response.setResponseCode(ResponseCode.OK);
+            response.setMessage("Order extended.");
+            response.setData(List.of(order));
+            return new ResponseEntity<>(response, HttpStatus.OK);
+
+        } catch (NotFoundException | OrderAlreadyClosedException | OrderValidationException e) {
+            GeneralApiResponse response = new GeneralApiResponse(ResponseCode.INVALID_REQUEST, e.getMessage());
+            return new ResponseEntity<>(response, HttpStatus.OK);
+        } catch (OrderVersionConflictException e) {
+            GeneralApiResponse response = new GeneralApiResponse(ResponseCode.CONFLICT, e.getMessage());
+            return new ResponseEntity<>(response, HttpStatus.CONFLICT);
+        } catch (IOException e) {
+            GeneralApiResponse response = new GeneralApiResponse(ResponseCode.SYSTEM_ERROR, e.getMessage());
+            return new ResponseEntity<>(response, HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    /**
+     * Validates and prices order items against one catalog snapshot, on the same day.
+     * Every problem is reported, not only the first one.
+     *
+     * @param orderItems items to price
+     * @return the priced items
+     * @throws OrderValidationException if the list is empty or any item is invalid
+     */
+    private List<OrderItem> priceOrderItems(List<OrderItem> orderItems) throws OrderValidationException {
+        if (orderItems == null || orderItems.isEmpty()) {
+            throw new OrderValidationException("Order should contain at least one item.");
+        }
+        Map<String, Movie> moviesById = movieRepository.getCatalog().getMoviesById();
+        LocalDate today = LocalDate.now();
+        List<String> errors = new ArrayList<>();
+        for (int i = 0; i < orderItems.size(); i++) {
+            OrderItem orderItem = orderItems.get(i);
+            Movie movie = orderItem == null ? null : moviesById.get(orderItem.getMovieId());
+            if (movie == null) {
+                errors.add("Item " + i + ": movie not found");
+            } else if (orderItem.getRentDurationInWeeks() <= 0) {
+                errors.add("Item " + i + ": rent duration should be at least one week");
+            } else {
+                orderItem.setCurrentPricePerWeek(movie.getPrice());
+                orderItem.setMovieReleaseDate(movie.getReleaseDate());
+                orderItem.setTotalPrice(MoviePriceClass.calculateTotalPrice(movie.getReleaseDate(), today,
+                        orderItem.getRentDurationInWeeks()));
+            }
+        }
+        if (!errors.isEmpty()) {
+            throw new OrderValidationException(String.join("; ", errors));
+        }
+        return new ArrayList<>(orderItems);
+    }
+
     /**
      * Adds new orderItem to an existing order.
      *
@@ -109,7 +408,7 @@ public class OrderController {
             , produces = "application/json")
     public ResponseEntity<?> addToOrder(@PathVariable String orderId, @RequestBody OrderItem orderItem) {
         try {
-            Movie movie = movieRepository.findById(orderItem.getMovieId());
+            Movie movie = movieRepository.findLocalById(orderItem.getMovieId());
             orderItem.setCurrentPricePerWeek(movie.getPrice());
             orderItem.setMovieReleaseDate(movie.getReleaseDate());
             orderItem.calculateTotalPrice();
@@ -133,6 +432,12 @@ public class OrderController {
         } catch (NotFoundException | NullPointerException | OrderAlreadyClosedException e) {
             GeneralApiResponse response = new GeneralApiResponse(ResponseCode.INVALID_REQUEST, e.getMessage());
             return new ResponseEntity<>(response, HttpStatus.OK);
+        } catch (OrderVersionConflictException e) {
+            GeneralApiResponse response = new GeneralApiResponse(ResponseCode.CONFLICT, e.getMessage());
+            return new ResponseEntity<>(response, HttpStatus.CONFLICT);
+        } catch (IOException e) {
+            GeneralApiResponse response = new GeneralApiResponse(ResponseCode.SYSTEM_ERROR, e.getMessage());
+            return new ResponseEntity<>(response, HttpStatus.INTERNAL_SERVER_ERROR);
         }
     }
 
@@ -159,14 +464,24 @@ public class OrderController {
     }
 
     /**
-     * Closes the order. It then becomes immutable. After closing the order, its data is added to statistics
+     * Closes the order. It then becomes immutable. After closing the order, its data is added to statistics.
+     * Statistics are recorded only by the request whose checkout was stored, so a concurrent extend or
+     * checkout of the same order is answered with CONFLICT instead of being counted twice.
+     * A retried checkout with the same Idempotency-Key gets the original invoice.
      *
-     * @param orderId id of an order to close
+     * @param idempotencyKey optional Idempotency-Key header
+     * @param orderId        id of an order to close
      * @return Final order invoice.
      */
 
     @RequestMapping(value = "/checkout", method = RequestMethod.PATCH, produces = "application/json")
-    public ResponseEntity<?> checkout(@RequestParam String orderId) {
+    public ResponseEntity<?> checkout(
+            @RequestHeader(value = IdempotencyStore.IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+            @RequestParam String orderId) {
+        return idempotencyStore.execute("PATCH /orders/checkout", idempotencyKey, orderId, () -> closeOrder(orderId));
+    }
+
+    private ResponseEntity<?> closeOrder(String orderId) {
         try {
             //Closing the order
             Order order = orderRepository.findById(orderId);
@@ -181,8 +496,7 @@ public class OrderController {
             // Statistics
             OrderStatistics stats = orderRepository.getStatistics();
             for (OrderItem s : order.getOrderItemList()) {
-                stats.addToOrderCount(s.getMovieId(), 1);
-                stats.addToRentedFor(s.getMovieId(), s.getRentDurationInWeeks());
+                stats.recordRental(s.getMovieId(), s.getRentDurationInWeeks());
             }
             orderRepository.recordStatistics(stats);
 
@@ -196,6 +510,9 @@ public class OrderController {
         } catch (NotFoundException | OrderAlreadyClosedException e) {
             GeneralApiResponse response = new GeneralApiResponse(ResponseCode.INVALID_REQUEST, e.getMessage());
             return new ResponseEntity<>(response, HttpStatus.OK);
+        } catch (OrderVersionConflictException e) {
+            GeneralApiResponse response = new GeneralApiResponse(ResponseCode.CONFLICT, e.getMessage());
+            return new ResponseEntity<>(response, HttpStatus.CONFLICT);
         } catch (IOException e) {
             GeneralApiResponse response = new GeneralApiResponse(ResponseCode.SYSTEM_ERROR, e.getMessage());
             return new ResponseEntity<>(response, HttpStatus.INTERNAL_SERVER_ERROR);
@@ -221,9 +538,12 @@ public class OrderController {
             response.setMessage("Order deleted");
             return new ResponseEntity<>(response, HttpStatus.OK);
 
-        } catch (NotFoundException | IOException e) {
+        } catch (NotFoundException e) {
             GeneralApiResponse response = new GeneralApiResponse(ResponseCode.INVALID_REQUEST, e.getMessage());
             return new ResponseEntity<>(response, HttpStatus.OK);
+        } catch (IOException e) {
+            GeneralApiResponse response = new GeneralApiResponse(ResponseCode.SYSTEM_ERROR, e.getMessage());
+            return new ResponseEntity<>(response, HttpStatus.INTERNAL_SERVER_ERROR);
         }
     }
 
@@ -3,23 +3,18 @@ package ee.fujitsu.movieapi.rest.controller.utils;
 import ee.fujitsu.movieapi.rest.api.exception.movie.MovieValidationException;
 import ee.fujitsu.movieapi.db.model.movie.Movie;
 
-import java.util.List;
+import java.util.Map;
 
 public class MovieUtils {
     /**
-     * Checks if the provided id is not present in the list
+     * Checks if the provided id is not present in the index
      *
-     * @param id     id to check
-     * @param movies list for searching
+     * @param id         id to check
+     * @param moviesById movies keyed by imdb id
      * @return true or false
      */
-    public static boolean checkUnique(String id, List<Movie> movies) {
-        for (Movie m : movies) {
-            if (id.equals(m.getImdbId())) {
-                return false;
-            }
-        }
-        return true;
+    public static boolean checkUnique(String id, Map<String, Movie> moviesById) {
+        return !moviesById.containsKey(id);
     }
 
     /**
@@ -44,12 +39,12 @@ public class MovieUtils {
     /**
      * Combines check methods together
      *
-     * @param movie  Movie to validate
-     * @param movies Movie list to confirm uniqueness
+     * @param movie      Movie to validate
+     * @param moviesById Movies keyed by imdb id to confirm uniqueness
      * @return true or false
      */
-    public static boolean validateMovie(Movie movie, List<Movie> movies) throws MovieValidationException {
-        if (checkUnique(movie.getImdbId(), movies) && checkNecessaryFieldsPresent(movie)) {
+    public static boolean validateMovie(Movie movie, Map<String, Movie> moviesById) throws MovieValidationException {
+        if (checkUnique(movie.getImdbId(), moviesById) && checkNecessaryFieldsPresent(movie)) {
             return true;
         } else {
             throw new MovieValidationException("Movie validation failed!");
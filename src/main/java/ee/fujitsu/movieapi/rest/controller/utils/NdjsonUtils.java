@@ -0,0 +1,37 @@
+package ee.fujitsu.movieapi.rest.controller.utils;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+/**
+ * Writes records as newline delimited json, one record per line, straight to the response stream.
+ * Records are serialized one at a time, so memory use does not depend on the number of records.
+ */
+public class NdjsonUtils {
+    public static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+    public static final MediaType APPLICATION_NDJSON = MediaType.parseMediaType(APPLICATION_NDJSON_VALUE);
+
+    /**
+     * Returns a response body that streams the records
+     *
+     * @param mapper  mapper to serialize the records with
+     * @param type    record type
+     * @param records records to write, iterated lazily while the response is written
+     * @return streaming response body
+     */
+    public static <T> StreamingResponseBody stream(ObjectMapper mapper, Class<T> type, Iterable<? extends T> records) {
+        ObjectWriter writer = mapper.writerFor(type);
+        return outputStream -> {
+            try (JsonGenerator generator = mapper.getFactory().createGenerator(outputStream)
+                    .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)) {
+                for (T record : records) {
+                    writer.writeValue(generator, record);
+                    generator.writeRaw('\n');
+                }
+            }
+        };
+    }
+}
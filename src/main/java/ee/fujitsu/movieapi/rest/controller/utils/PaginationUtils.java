@@ -0,0 +1,61 @@
+package ee.fujitsu.movieapi.rest.controller.utils;
+
+import ee.fujitsu.movieapi.rest.api.exception.general.InvalidPageRequestException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Page size and cursor handling of paginated endpoints. A cursor is the opaque form
+ * of the last key on the previous page, so following it costs the same however deep the page is,
+ * and records inserted meanwhile neither repeat nor shift the records after it.
+ */
+public class PaginationUtils {
+    public static final int DEFAULT_LIMIT = 100;
+    public static final int MAX_LIMIT = 1000;
+
+    /**
+     * Returns the page size to use
+     *
+     * @param limit requested page size, or null for the default one
+     * @return page size
+     * @throws InvalidPageRequestException if the page size is out of range
+     */
+    public static int resolveLimit(Integer limit) throws InvalidPageRequestException {
+        if (limit == null) {
+            return DEFAULT_LIMIT;
+        }
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw new InvalidPageRequestException("Limit must be between 1 and " + MAX_LIMIT);
+        }
+        return limit;
+    }
+
+    /**
+     * Turns the last key of a page into a cursor
+     *
+     * @param key last key of the page
+     * @return cursor
+     */
+    public static String encodeCursor(String key) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Turns a cursor back into the last key of the previous page
+     *
+     * @param cursor cursor from a previous response, or null for the first page
+     * @return key or null for the first page
+     * @throws InvalidPageRequestException if the cursor is malformed
+     */
+    public static String decodeCursor(String cursor) throws InvalidPageRequestException {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        try {
+            return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidPageRequestException("Invalid cursor");
+        }
+    }
+}
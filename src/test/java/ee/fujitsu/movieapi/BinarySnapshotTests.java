@@ -0,0 +1,138 @@
+package ee.fujitsu.movieapi;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import ee.fujitsu.movieapi.db.model.movie.Movie;
+import ee.fujitsu.movieapi.db.model.movie.MovieMetadata;
+import ee.fujitsu.movieapi.db.model.movie.MovieRating;
+import ee.fujitsu.movieapi.db.model.order.Order;
+import ee.fujitsu.movieapi.db.model.order.OrderItem;
+import ee.fujitsu.movieapi.db.model.order.OrderStatus;
+import ee.fujitsu.movieapi.db.model.statistics.OrderStatistics;
+import ee.fujitsu.movieapi.db.persistence.BinarySnapshot;
+import ee.fujitsu.movieapi.db.persistence.DataFileFormats;
+import ee.fujitsu.movieapi.db.persistence.MovieSnapshotCodec;
+import ee.fujitsu.movieapi.db.persistence.OrderSnapshotCodec;
+import ee.fujitsu.movieapi.db.persistence.SnapshotConverter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that binary snapshots, the db file formats and the converter keep every stored field of movies and orders
+ */
+public class BinarySnapshotTests {
+    private final ObjectMapper jsonMapper = new ObjectMapper().findAndRegisterModules();
+
+    @TempDir
+    File tempDir;
+
+    @Test
+    void moviesSurviveBinaryRoundTrip() throws IOException {
+        MovieRating rating = new MovieRating();
+        rating.setSource("Internet Movie Database");
+        rating.setValue("9.3/10");
+        MovieMetadata metadata = new MovieMetadata();
+        metadata.setDataFound(true);
+        metadata.setDirector("Frank Darabont");
+        metadata.setRatings(List.of(rating));
+        Movie withMetadata = movie("tt0111161", "The Shawshank Redemption", LocalDate.of(1994, 10, 14), Set.of("Drama"));
+        withMetadata.setMovieMetadata(metadata);
+        Movie bare = movie("tt0000001", "Ünïcödé title", null, null);
+
+        File file = new File(tempDir, "movies.bin");
+        BinarySnapshot.write(file, MovieSnapshotCodec.INSTANCE, List.of(withMetadata, bare));
+        List<Movie> movies = BinarySnapshot.read(file, MovieSnapshotCodec.INSTANCE);
+
+        assertEquals(2, movies.size());
+        assertEquals(jsonMapper.writeValueAsString(withMetadata), jsonMapper.writeValueAsString(movies.get(0)));
+        assertEquals(jsonMapper.writeValueAsString(bare), jsonMapper.writeValueAsString(movies.get(1)));
+    }
+
+    @Test
+    void ordersSurviveBinaryRoundTrip() throws IOException {
+        OrderItem item = new OrderItem();
+        item.setMovieId("tt0111161");
+        item.setMovieReleaseDate(LocalDate.of(1994, 10, 14));
+        item.setRentDurationInWeeks(3);
+        item.setCurrentPricePerWeek(new BigDecimal("1.99"));
+        item.setTotalPrice(new BigDecimal("5.97"));
+        Order order = new Order();
+        order.generateOrderId();
+        order.addToOrderItems(item);
+        order.setTotalPrice(new BigDecimal("5.97"));
+        order.setOrderStatus(OrderStatus.CLOSED);
+        order.setTimestamp(LocalDateTime.of(2022, 4, 1, 12, 30, 15, 123456789));
+        order.setVersion(7);
+
+        File file = new File(tempDir, "orders.bin");
+        BinarySnapshot.write(file, OrderSnapshotCodec.INSTANCE, List.of(order));
+        List<Order> orders = BinarySnapshot.read(file, OrderSnapshotCodec.INSTANCE);
+
+        assertEquals(jsonMapper.writeValueAsString(List.of(order)), jsonMapper.writeValueAsString(orders));
+    }
+
+    @Test
+    void converterKeepsJsonDatabase() throws IOException {
+        List<Movie> original = List.of(
+                movie("tt0111161", "The Shawshank Redemption", LocalDate.of(1994, 10, 14), Set.of("Drama")),
+                movie("tt0068646", "The Godfather", LocalDate.of(1972, 3, 24), Set.of("Crime", "Drama")));
+        File json = new File(tempDir, "movies.json");
+        File bin = new File(tempDir, "movies.bin");
+        File back = new File(tempDir, "back.json");
+        jsonMapper.writeValue(json, original);
+
+        assertEquals(2, SnapshotConverter.convert("movies", json, bin));
+        assertEquals(2, SnapshotConverter.convert("movies", bin, back));
+
+        // Categories are a set, compare with the json as it is written after being parsed
+        assertEquals(jsonMapper.readTree(jsonMapper.writeValueAsBytes(jsonMapper.readValue(json, Movie[].class))),
+                jsonMapper.readTree(back));
+        assertThrows(IOException.class, () -> BinarySnapshot.read(bin, OrderSnapshotCodec.INSTANCE));
+    }
+
+    @Test
+    void converterSupportsEveryFormat() throws IOException {
+        List<Movie> original = List.of(
+                movie("tt0111161", "The Shawshank Redemption", LocalDate.of(1994, 10, 14), Set.of("Drama")),
+                movie("tt0000001", "Ünïcödé title", null, null));
+        File json = new File(tempDir, "movies.json");
+        jsonMapper.writeValue(json, original);
+        File previous = json;
+        for (String extension : List.of(".yaml", ".smile", ".cbor", ".bin", ".json")) {
+            File next = new File(tempDir, "converted" + extension);
+            assertEquals(2, SnapshotConverter.convert("movies", previous, next));
+            previous = next;
+        }
+        assertEquals(jsonMapper.readTree(json), jsonMapper.readTree(previous));
+
+        OrderStatistics statistics = new OrderStatistics();
+        File statsJson = new File(tempDir, "orderStatistics.json");
+        File statsSmile = new File(tempDir, "orderStatistics.smile");
+        jsonMapper.writeValue(statsJson, statistics);
+        assertEquals(1, SnapshotConverter.convert("statistics", statsJson, statsSmile));
+        assertEquals(jsonMapper.writeValueAsString(statistics),
+                jsonMapper.writeValueAsString(DataFileFormats.SMILE.readValue(statsSmile, OrderStatistics.class)));
+        assertThrows(IllegalArgumentException.class,
+                () -> SnapshotConverter.convert("statistics", statsJson, new File(tempDir, "orderStatistics.bin")));
+        assertThrows(IllegalArgumentException.class,
+                () -> SnapshotConverter.convert("movies", json, new File(tempDir, "movies.xml")));
+    }
+
+    private static Movie movie(String imdbId, String title, LocalDate releaseDate, Set<String> categories) {
+        Movie movie = new Movie();
+        movie.setImdbId(imdbId);
+        movie.setTitle(title);
+        movie.setReleaseDate(releaseDate);
+        movie.setCategories(categories);
+        return movie;
+    }
+}
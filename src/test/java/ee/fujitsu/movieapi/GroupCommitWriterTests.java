@@ -0,0 +1,168 @@
+package ee.fujitsu.movieapi;
+
+import ee.fujitsu.movieapi.db.persistence.DurabilityMode;
+import ee.fujitsu.movieapi.db.persistence.GroupCommitWriter;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks batching, the durability modes and shutdown of the group commit writer
+ */
+public class GroupCommitWriterTests {
+    private static final int THREADS = 8;
+
+    @Test
+    void concurrentChangesAreBatchedTogether() throws Exception {
+        List<List<Integer>> batches = Collections.synchronizedList(new ArrayList<>());
+        GroupCommitWriter<Integer> writer = new GroupCommitWriter<>("test", batch -> batches.add(List.copyOf(batch)),
+                DurabilityMode.BATCHED, 200, 100);
+        try {
+            commitConcurrently(writer, THREADS);
+        } finally {
+            writer.close();
+        }
+
+        assertEquals(THREADS, batches.stream().mapToInt(List::size).sum());
+        assertTrue(batches.size() < THREADS, "Expected changes to share batches, got " + batches);
+    }
+
+    @Test
+    void batchesAreLimitedToMaxBatch() throws Exception {
+        List<List<Integer>> batches = Collections.synchronizedList(new ArrayList<>());
+        GroupCommitWriter<Integer> writer = new GroupCommitWriter<>("test", batch -> batches.add(List.copyOf(batch)),
+                DurabilityMode.BATCHED, 200, 2);
+        try {
+            commitConcurrently(writer, THREADS);
+        } finally {
+            writer.close();
+        }
+
+        assertEquals(THREADS, batches.stream().mapToInt(List::size).sum());
+        assertTrue(batches.stream().allMatch(batch -> batch.size() <= 2), "Batch larger than maxBatch in " + batches);
+    }
+
+    @Test
+    void syncModePersistsEveryChangeOnTheCallingThread() throws IOException {
+        List<String> threads = new ArrayList<>();
+        List<List<Integer>> batches = new ArrayList<>();
+        GroupCommitWriter<Integer> writer = new GroupCommitWriter<>("test", batch -> {
+            threads.add(Thread.currentThread().getName());
+            batches.add(List.copyOf(batch));
+        }, DurabilityMode.SYNC, 200, 100);
+        writer.commit(1);
+        writer.commit(2);
+        writer.close();
+
+        assertEquals(List.of(List.of(1), List.of(2)), batches);
+        assertEquals(List.of(Thread.currentThread().getName(), Thread.currentThread().getName()), threads);
+    }
+
+    @Test
+    void failedBatchFailsItsCommits() {
+        GroupCommitWriter<Integer> writer = new GroupCommitWriter<>("test", batch -> {
+            throw new IOException("disk full");
+        }, DurabilityMode.BATCHED, 0, 100);
+        try {
+            IOException e = assertThrows(IOException.class, () -> writer.commit(1));
+            assertEquals("disk full", e.getMessage());
+        } finally {
+            writer.close();
+        }
+    }
+
+    @Test
+    void closeWritesQueuedChangesWithoutInterruptingTheWriter() throws Exception {
+        List<Integer> persisted = Collections.synchronizedList(new ArrayList<>());
+        List<Boolean> interrupted = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        GroupCommitWriter<Integer> writer = new GroupCommitWriter<>("test", batch -> {
+            writing.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            interrupted.add(Thread.currentThread().isInterrupted());
+            persisted.addAll(batch);
+        }, DurabilityMode.BATCHED, 0, 1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> first = executor.submit(() -> commit(writer, 1));
+            writing.await();
+            Future<?> second = executor.submit(() -> commit(writer, 2));
+            Thread closer = new Thread(writer::close);
+            closer.start();
+            release.countDown();
+            closer.join(TimeUnit.SECONDS.toMillis(5));
+
+            first.get(5, TimeUnit.SECONDS);
+            second.get(5, TimeUnit.SECONDS);
+            assertFalse(closer.isAlive());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(Set.of(1, 2), Set.copyOf(persisted));
+        assertFalse(interrupted.contains(true));
+    }
+
+    @Test
+    void commitAfterCloseIsPersistedByTheCaller() throws Exception {
+        List<Integer> persisted = Collections.synchronizedList(new ArrayList<>());
+        GroupCommitWriter<Integer> writer = new GroupCommitWriter<>("test", persisted::addAll,
+                DurabilityMode.BATCHED, 0, 100);
+        writer.close();
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            executor.submit(() -> commit(writer, 1)).get(5, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(List.of(1), persisted);
+    }
+
+    private static void commitConcurrently(GroupCommitWriter<Integer> writer, int count) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(count);
+        try {
+            List<Future<?>> commits = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                int change = i;
+                commits.add(executor.submit(() -> {
+                    start.await();
+                    writer.commit(change);
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> commit : commits) {
+                commit.get(5, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void commit(GroupCommitWriter<Integer> writer, int change) {
+        try {
+            writer.commit(change);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
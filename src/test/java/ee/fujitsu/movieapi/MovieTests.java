@@ -1,23 +1,33 @@
 package ee.fujitsu.movieapi;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import ee.fujitsu.movieapi.db.model.movie.Movie;
 import ee.fujitsu.movieapi.db.model.movie.MoviePriceClass;
+import ee.fujitsu.movieapi.db.repository.MovieRepository;
+import ee.fujitsu.movieapi.rest.api.exception.general.NotFoundException;
 import ee.fujitsu.movieapi.rest.api.response.GeneralApiResponse;
 import ee.fujitsu.movieapi.rest.api.response.MovieApiResponse;
+import ee.fujitsu.movieapi.rest.api.response.MovieImportApiResponse;
+import ee.fujitsu.movieapi.rest.api.response.MovieImportResult;
 import ee.fujitsu.movieapi.rest.api.response.ResponseCode;
 import org.apache.commons.lang3.RandomStringUtils;
 import org.junit.jupiter.api.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.availability.ApplicationAvailability;
+import org.springframework.boot.availability.ReadinessState;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.client.TestRestTemplate;
 import org.springframework.boot.web.server.LocalServerPort;
 import org.springframework.http.*;
 
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.UUID;
 
@@ -30,6 +40,10 @@ class MovieTests extends AbstractMovieApiTest{
     private int port;
     @Autowired
     private TestRestTemplate restTemplate;
+    @Autowired
+    private MovieRepository movieRepository;
+    @Autowired
+    private ApplicationAvailability applicationAvailability;
 
     @Test
     void testSuccessfulResponseShouldContainOkStatus() throws Exception {
@@ -39,6 +53,13 @@ class MovieTests extends AbstractMovieApiTest{
         }
     }
 
+    @Test
+    void storesAreLoadedBeforeReadinessTest() throws Exception {
+        assertEquals(ReadinessState.ACCEPTING_TRAFFIC, applicationAvailability.getReadinessState());
+        assertFalse(movieRepository.findAll().isEmpty());
+        assertEquals("testId", movieRepository.findLocalById("testId").getImdbId());
+    }
+
     @Test
     void testFailedResponseShouldContainStatusAndMessage() throws Exception {
         String url = "http://localhost:" + port + "/" + RandomStringUtils.random(10);
@@ -176,6 +197,147 @@ class MovieTests extends AbstractMovieApiTest{
         assertEquals(true, findResponse.getBody().getData().get(0).getImdbId().equals(movie.getImdbId()));
     }
 
+    @Test
+    void searchByCategoriesTest(){
+        Movie movie = getMockMovie();
+        String cat = UUID.randomUUID().toString();
+        String otherCat = UUID.randomUUID().toString();
+        movie.setCategories(new HashSet<>(Set.of(cat, otherCat)));
+        addMovie(movie);
+        ResponseEntity<MovieApiResponse> allResponse = findMovieByCategories(cat.toUpperCase() + "," + otherCat, "all");
+        ResponseEntity<MovieApiResponse> anyResponse = findMovieByCategories(cat + ",missing", "any");
+        ResponseEntity<MovieApiResponse> noneResponse = findMovieByCategories(cat + ",missing", "all");
+        deleteMovie(movie);
+
+        assertEquals(movie.getImdbId(), allResponse.getBody().getData().get(0).getImdbId());
+        assertEquals(movie.getImdbId(), anyResponse.getBody().getData().get(0).getImdbId());
+        assertNull(noneResponse.getBody().getData());
+    }
+
+    @Test
+    void paginationReturnsEveryMovieOnceTest() {
+        Movie first = getMockMovie();
+        Movie second = getMockMovie();
+        addMovie(first);
+        addMovie(second);
+
+        Set<String> allIds = new HashSet<>();
+        this.restTemplate.getForEntity("http://localhost:" + port + "/movies", MovieApiResponse.class)
+                .getBody().getData().forEach(movie -> allIds.add(movie.getImdbId()));
+        List<String> pagedIds = new ArrayList<>();
+        String cursor = null;
+        do {
+            ResponseEntity<MovieApiResponse> page = findMoviePage(2, cursor);
+            assertTrue(page.getBody().getData().size() <= 2);
+            page.getBody().getData().forEach(movie -> pagedIds.add(movie.getImdbId()));
+            cursor = page.getBody().getNextCursor();
+        } while (cursor != null);
+        ResponseEntity<MovieApiResponse> invalidResponse = findMoviePage(0, null);
+        deleteMovie(first);
+        deleteMovie(second);
+
+        assertEquals(allIds.size(), pagedIds.size());
+        assertEquals(allIds, new HashSet<>(pagedIds));
+        assertEquals(ResponseCode.INVALID_REQUEST, invalidResponse.getBody().getResponseCode());
+    }
+
+    @Test
+    void exportStreamsOneMoviePerLineTest() throws IOException {
+        Movie movie = getMockMovie();
+        addMovie(movie);
+        ResponseEntity<String> exportResponse = this.restTemplate.getForEntity(
+                "http://localhost:" + port + "/movies/export", String.class);
+        int catalogSize = movieRepository.findAll().size();
+        deleteMovie(movie);
+
+        String[] lines = exportResponse.getBody().split("\n");
+        assertEquals(HttpStatus.OK, exportResponse.getStatusCode());
+        assertEquals(catalogSize, lines.length);
+        assertTrue(exportResponse.getBody().contains("\"imdbId\":\"" + movie.getImdbId() + "\""));
+        assertNotNull(new ObjectMapper().readTree(lines[0]).get("imdbId"));
+    }
+
+    @Test
+    void unchangedCategoryIsNotModifiedTest() {
+        Movie movie = getMockMovie();
+        String category = UUID.randomUUID().toString();
+        movie.setCategories(new HashSet<>(Set.of(category)));
+        addMovie(movie);
+        String url = "http://localhost:" + port + "/movies/" + category;
+
+        ResponseEntity<MovieApiResponse> first = this.restTemplate.getForEntity(url, MovieApiResponse.class);
+        String eTag = first.getHeaders().getETag();
+        HttpHeaders headers = new HttpHeaders();
+        headers.setIfNoneMatch(eTag);
+        ResponseEntity<MovieApiResponse> revalidated = this.restTemplate.exchange(url, HttpMethod.GET,
+                new HttpEntity<>(headers), MovieApiResponse.class);
+
+        Movie other = getMockMovie();
+        other.setCategories(new HashSet<>(Set.of(category)));
+        addMovie(other);
+        ResponseEntity<MovieApiResponse> changed = this.restTemplate.exchange(url, HttpMethod.GET,
+                new HttpEntity<>(headers), MovieApiResponse.class);
+        deleteMovie(movie);
+        deleteMovie(other);
+
+        assertNotNull(eTag);
+        assertEquals(1, first.getBody().getData().size());
+        assertEquals(HttpStatus.NOT_MODIFIED, revalidated.getStatusCode());
+        assertEquals(eTag, revalidated.getHeaders().getETag());
+        assertEquals(HttpStatus.OK, changed.getStatusCode());
+        assertNotEquals(eTag, changed.getHeaders().getETag());
+        assertEquals(2, changed.getBody().getData().size());
+    }
+
+    @Test
+    void bulkImportReportsEveryRowTest() {
+        Movie movie = getMockMovie();
+        Movie invalid = getMockMovie();
+        invalid.setTitle(null);
+        Movie existing = getMockMovie();
+        addMovie(existing);
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        ResponseEntity<MovieImportApiResponse> response = this.restTemplate.postForEntity(
+                "http://localhost:" + port + "/movies/bulk",
+                new HttpEntity<>(List.of(movie, movie, invalid, existing), headers), MovieImportApiResponse.class);
+        ResponseEntity<MovieApiResponse> findResponse = findMovieById(movie.getImdbId());
+        deleteMovie(movie);
+        deleteMovie(existing);
+
+        List<MovieImportResult> results = response.getBody().getResults();
+        assertEquals(ResponseCode.OK, response.getBody().getResponseCode());
+        assertEquals(1, response.getBody().getAdded());
+        assertEquals(3, response.getBody().getRejected());
+        assertEquals(MovieImportResult.Status.ADDED, results.get(0).getStatus());
+        assertEquals(MovieImportResult.Status.DUPLICATE, results.get(1).getStatus());
+        assertEquals(MovieImportResult.Status.INVALID, results.get(2).getStatus());
+        assertEquals(MovieImportResult.Status.DUPLICATE, results.get(3).getStatus());
+        assertEquals(movie.getImdbId(), findResponse.getBody().getData().get(0).getImdbId());
+    }
+
+    @Test
+    void movieCrossingPriceClassBoundaryIsRepricedTest() throws IOException, NotFoundException {
+        Movie movie = getMockMovie();
+        LocalDate tomorrow = LocalDate.now().plusDays(1);
+        movie.setReleaseDate(tomorrow.minusDays(MoviePriceClass.PriceClassConstants.DAYS_UNTIL_REGULAR));
+        addMovie(movie);
+        MoviePriceClass before = movieRepository.findLocalById(movie.getImdbId()).getPriceClass();
+        long versionBefore = movieRepository.getCatalogVersion();
+
+        int repriced = movieRepository.repriceMovies(tomorrow);
+        long versionAfter = movieRepository.getCatalogVersion();
+        Movie after = movieRepository.findLocalById(movie.getImdbId());
+        deleteMovie(movie);
+
+        assertEquals(MoviePriceClass.NEW, before);
+        assertTrue(repriced >= 1);
+        assertEquals(MoviePriceClass.REGULAR, after.getPriceClass());
+        assertEquals(0, MoviePriceClass.PriceClassConstants.REGULAR_PRICE.compareTo(after.getPrice()));
+        assertEquals(versionBefore + 1, versionAfter);
+    }
+
     @Test
     void changingReleaseDateClassChangesPriceTest(){
         Movie movie = getMockMovie();
@@ -264,6 +426,17 @@ class MovieTests extends AbstractMovieApiTest{
         return response;
     }
 
+    public ResponseEntity<MovieApiResponse> findMoviePage(int limit, String cursor) {
+        String movieUrl = "http://localhost:" + port + "/movies?limit=" + limit + (cursor == null ? "" : "&cursor=" + cursor);
+        return this.restTemplate.getForEntity(movieUrl, MovieApiResponse.class);
+    }
+
+    public ResponseEntity<MovieApiResponse> findMovieByCategories(String categories, String match) {
+        String movieUrl = "http://localhost:" + port + "/movies/search?categories=" + categories + "&match=" + match;
+        ResponseEntity<MovieApiResponse> response = this.restTemplate.getForEntity(movieUrl, MovieApiResponse.class);
+        return response;
+    }
+
     public ResponseEntity<MovieApiResponse> findMovieByCategory(String cat) {
         String movieUrl = "http://localhost:" + port + "/movies/" + cat + "/";
         ResponseEntity<MovieApiResponse> response = this.restTemplate.getForEntity(movieUrl, MovieApiResponse.class);
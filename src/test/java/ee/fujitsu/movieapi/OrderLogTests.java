@@ -0,0 +1,261 @@
+package ee.fujitsu.movieapi;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import ee.fujitsu.movieapi.db.configuration.ApiConfiguration;
+import ee.fujitsu.movieapi.db.model.order.Order;
+import ee.fujitsu.movieapi.db.model.order.OrderItem;
+import ee.fujitsu.movieapi.db.model.order.OrderStatus;
+import ee.fujitsu.movieapi.db.persistence.DataFileFormats;
+import ee.fujitsu.movieapi.db.persistence.DurabilityMode;
+import ee.fujitsu.movieapi.db.persistence.OrderLog;
+import ee.fujitsu.movieapi.db.persistence.OrderLogRecord;
+import ee.fujitsu.movieapi.db.persistence.OrderLogRecordType;
+import ee.fujitsu.movieapi.db.repository.OrderRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks replay and recovery of the order log, and the snapshot the order repository writes when the log grows
+ */
+public class OrderLogTests {
+    private final ObjectMapper jsonMapper = new ObjectMapper().findAndRegisterModules();
+
+    @TempDir
+    File tempDir;
+
+    @Test
+    void replayAppliesRecordsInOrder() throws IOException {
+        Order kept = order();
+        Order deleted = order();
+        Order checkedOut = new Order(kept);
+        checkedOut.setOrderStatus(OrderStatus.CLOSED);
+        checkedOut.setVersion(1);
+        File file = new File(tempDir, "orders.log");
+        try (OrderLog log = new OrderLog(file, jsonMapper)) {
+            log.append(List.of(OrderLogRecord.of(OrderLogRecordType.CREATE, kept),
+                    OrderLogRecord.of(OrderLogRecordType.CREATE, deleted)));
+            log.append(OrderLogRecord.of(OrderLogRecordType.CHECKOUT, checkedOut));
+            log.append(OrderLogRecord.delete(deleted.getOrderId()));
+        }
+
+        Map<String, Order> orders = new HashMap<>();
+        try (OrderLog log = new OrderLog(file, jsonMapper)) {
+            assertEquals(4, log.replay(orders));
+            assertEquals(4, log.getRecordCount());
+        }
+
+        assertEquals(List.of(kept.getOrderId()), new ArrayList<>(orders.keySet()));
+        assertEquals(jsonMapper.writeValueAsString(checkedOut), jsonMapper.writeValueAsString(orders.get(kept.getOrderId())));
+    }
+
+    @Test
+    void tornTailIsTruncated() throws IOException {
+        Order first = order();
+        Order second = order();
+        File file = new File(tempDir, "orders.log");
+        try (OrderLog log = new OrderLog(file, jsonMapper)) {
+            log.append(OrderLogRecord.of(OrderLogRecordType.CREATE, first));
+            log.append(OrderLogRecord.of(OrderLogRecordType.CREATE, second));
+        }
+        long validLength = file.length();
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        // A crash in the middle of the third record leaves its header and half of its payload behind
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(validLength);
+            raf.write(bytes, 0, bytes.length / 4);
+        }
+
+        Map<String, Order> orders = new HashMap<>();
+        Order third = order();
+        try (OrderLog log = new OrderLog(file, jsonMapper)) {
+            assertEquals(2, log.replay(orders));
+            assertEquals(validLength, file.length());
+            log.append(OrderLogRecord.of(OrderLogRecordType.CREATE, third));
+        }
+
+        orders.clear();
+        try (OrderLog log = new OrderLog(file, jsonMapper)) {
+            assertEquals(3, log.replay(orders));
+        }
+        assertTrue(orders.keySet().containsAll(List.of(first.getOrderId(), second.getOrderId(), third.getOrderId())));
+    }
+
+    @Test
+    void recordWithChecksumMismatchIsTruncated() throws IOException {
+        Order first = order();
+        Order second = order();
+        File file = new File(tempDir, "orders.log");
+        long firstLength;
+        try (OrderLog log = new OrderLog(file, jsonMapper)) {
+            log.append(OrderLogRecord.of(OrderLogRecordType.CREATE, first));
+            firstLength = file.length();
+            log.append(OrderLogRecord.of(OrderLogRecordType.CREATE, second));
+        }
+        // Flips a byte in the payload of the second record
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            long position = file.length() - 2;
+            raf.seek(position);
+            int value = raf.read();
+            raf.seek(position);
+            raf.write(value ^ 0xFF);
+        }
+
+        Map<String, Order> orders = new HashMap<>();
+        try (OrderLog log = new OrderLog(file, jsonMapper)) {
+            assertEquals(1, log.replay(orders));
+        }
+
+        assertEquals(List.of(first.getOrderId()), new ArrayList<>(orders.keySet()));
+        assertEquals(firstLength, file.length());
+    }
+
+    @Test
+    void appendReopensChannelAfterClose() throws IOException {
+        File file = new File(tempDir, "orders.log");
+        try (OrderLog log = new OrderLog(file, jsonMapper)) {
+            log.append(OrderLogRecord.of(OrderLogRecordType.CREATE, order()));
+            log.close();
+            log.append(OrderLogRecord.of(OrderLogRecordType.CREATE, order()));
+        }
+
+        try (OrderLog log = new OrderLog(file, jsonMapper)) {
+            assertEquals(2, log.replay(new HashMap<>()));
+        }
+    }
+
+    @Test
+    void repositoryWritesSnapshotAndTruncatesLog() throws IOException {
+        Files.writeString(new File(tempDir, "orders.json").toPath(), "[]");
+        File logFile = new File(tempDir, "orders.log");
+        OrderRepository repository = repository(2);
+        Order first = order();
+        Order second = order();
+        Order third = order();
+        try {
+            repository.add(first);
+            assertTrue(logFile.length() > 0);
+            // The second record reaches the snapshot interval, the snapshot has to contain it
+            // although it is published only after it was logged
+            repository.add(second);
+            assertEquals(0, logFile.length());
+            repository.add(third);
+        } finally {
+            repository.close();
+        }
+
+        List<Order> snapshot = new ArrayList<>();
+        DataFileFormats.forExtension(".json").readRecords(new File(tempDir, "orders.json"), Order.class, snapshot::add);
+        assertEquals(List.of(first.getOrderId(), second.getOrderId()).stream().sorted().toList(),
+                snapshot.stream().map(Order::getOrderId).toList());
+
+        OrderRepository reloaded = repository(2);
+        try {
+            reloaded.loadOrders();
+            assertEquals(3, reloaded.findAll().size());
+            assertEquals(jsonMapper.writeValueAsString(third),
+                    jsonMapper.writeValueAsString(reloaded.findAll().stream()
+                            .filter(order -> order.getOrderId().equals(third.getOrderId()))
+                            .findFirst().orElseThrow()));
+        } finally {
+            reloaded.close();
+        }
+    }
+
+    @Test
+    void concurrentChangesSurviveLogCompaction() throws Exception {
+        Files.writeString(new File(tempDir, "orders.json").toPath(), "[]");
+        int threads = 8;
+        int ordersPerThread = 25;
+        // Compacts after almost every batch, while other threads still have to publish what they logged
+        OrderRepository repository = repository(2, DurabilityMode.BATCHED);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> writers = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                writers.add(executor.submit(() -> {
+                    start.await();
+                    for (int j = 0; j < ordersPerThread; j++) {
+                        Order order = repository.add(order());
+                        if (j % 5 == 0) {
+                            repository.delete(order.getOrderId());
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> writer : writers) {
+                writer.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+            repository.close();
+        }
+
+        OrderRepository reloaded = repository(2);
+        try {
+            reloaded.loadOrders();
+            assertEquals(repository.findAll().size(), reloaded.findAll().size());
+            assertEquals(threads * (ordersPerThread - ordersPerThread / 5), reloaded.findAll().size());
+        } finally {
+            reloaded.close();
+        }
+    }
+
+    private OrderRepository repository(int snapshotInterval) throws IOException {
+        return repository(snapshotInterval, DurabilityMode.SYNC);
+    }
+
+    private OrderRepository repository(int snapshotInterval, DurabilityMode durabilityMode) throws IOException {
+        ApiConfiguration configuration = new ApiConfiguration();
+        ReflectionTestUtils.setField(configuration, "fileExtension", ".json");
+        ReflectionTestUtils.setField(configuration, "filePath", tempDir.getPath() + File.separator);
+        ReflectionTestUtils.setField(configuration, "orderFileName", "orders");
+        ReflectionTestUtils.setField(configuration, "orderStatsFileName", "orderStatistics");
+        ReflectionTestUtils.setField(configuration, "orderLogSnapshotInterval", snapshotInterval);
+        ReflectionTestUtils.setField(configuration, "durabilityMode", durabilityMode);
+        ReflectionTestUtils.setField(configuration, "maxBatch", 4);
+        ReflectionTestUtils.setField(configuration, "orderLockStripes", 4);
+        OrderRepository repository = new OrderRepository();
+        repository.setApiConfiguration(configuration);
+        repository.initializeFields();
+        return repository;
+    }
+
+    private static Order order() {
+        OrderItem item = new OrderItem();
+        item.setMovieId("tt0111161");
+        item.setMovieReleaseDate(LocalDate.of(1994, 10, 14));
+        item.setRentDurationInWeeks(3);
+        item.setCurrentPricePerWeek(new BigDecimal("1.99"));
+        item.setTotalPrice(new BigDecimal("5.97"));
+        Order order = new Order();
+        order.generateOrderId();
+        order.addToOrderItems(item);
+        order.setTotalPrice(new BigDecimal("5.97"));
+        order.setOrderStatus(OrderStatus.OPEN);
+        order.setTimestamp(LocalDateTime.of(2022, 4, 1, 12, 30, 15));
+        return order;
+    }
+}
@@ -5,6 +5,7 @@ import ee.fujitsu.movieapi.db.model.order.Order;
 import ee.fujitsu.movieapi.db.model.order.OrderItem;
 import ee.fujitsu.movieapi.db.model.order.OrderStatus;
 import ee.fujitsu.movieapi.rest.api.response.*;
+import ee.fujitsu.movieapi.rest.cache.IdempotencyStore;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClientBuilder;
 import org.junit.jupiter.api.Test;
@@ -15,6 +16,7 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.client.TestRestTemplate;
 import org.springframework.boot.web.server.LocalServerPort;
 import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -24,7 +26,14 @@ import org.springframework.web.client.RestTemplate;
 import java.io.IOException;
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -36,6 +45,8 @@ public class OrderTests extends AbstractMovieApiTest {
     private int port;
     @Autowired
     private TestRestTemplate restTemplate;
+    @Autowired
+    private IdempotencyStore idempotencyStore;
 
     @Test
     void testSuccessfulResponseShouldContainOkStatus() throws Exception {
@@ -330,6 +341,294 @@ public class OrderTests extends AbstractMovieApiTest {
     }
 
 
+    @Test
+    void concurrentCheckoutsAreCountedOnceTest() throws Exception {
+        OrderItem item = createOrderItem();
+        Movie movie = getMockMovie();
+        movie.setReleaseDate(LocalDate.now());
+        movie.setPriceClass();
+        item.setRentDurationInWeeks(5);
+
+        addMovie(movie);
+        String orderId = addValidOrder(item, movie).getBody().getData().get(0).getOrderId();
+        checkout(orderId); // switches the template to a PATCH capable request factory
+
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<ResponseCode>> results = new ArrayList<>();
+        String otherOrderId = addValidOrder(item, movie).getBody().getData().get(0).getOrderId();
+        String checkUrl = "http://localhost:" + port + "/orders/checkout?orderId=" + otherOrderId;
+        for (int i = 0; i < threads; i++) {
+            results.add(executor.submit(() -> {
+                start.await();
+                return this.restTemplate.exchange(checkUrl, HttpMethod.PATCH, null, GeneralApiResponse.class)
+                        .getBody().getResponseCode();
+            }));
+        }
+        start.countDown();
+        int succeeded = 0;
+        for (Future<ResponseCode> result : results) {
+            ResponseCode code = result.get();
+            assertTrue(code == ResponseCode.OK || code == ResponseCode.INVALID_REQUEST || code == ResponseCode.CONFLICT);
+            if (code == ResponseCode.OK) {
+                succeeded++;
+            }
+        }
+        executor.shutdown();
+        ResponseEntity<OrderStatisticsApiResponse> statsResponse = getStatistics();
+
+        // Clean up
+        deleteMovie(movie);
+        deleteOrder(orderId);
+        deleteOrder(otherOrderId);
+        deleteStats(movie.getImdbId());
+
+        assertEquals(1, succeeded);
+        assertEquals(2, statsResponse.getBody().getOrderStatistics().getMovieOrderCount().get(movie.getImdbId()));
+        assertEquals(10, statsResponse.getBody().getOrderStatistics().getMovieRentedFor().get(movie.getImdbId()));
+    }
+
+    @Test
+    void concurrentCheckoutsOfDifferentOrdersAreCountedExactlyTest() throws Exception {
+        OrderItem item = createOrderItem();
+        Movie movie = getMockMovie();
+        movie.setReleaseDate(LocalDate.now());
+        movie.setPriceClass();
+        item.setRentDurationInWeeks(3);
+
+        addMovie(movie);
+        int orders = 16;
+        List<String> orderIds = new ArrayList<>();
+        for (int i = 0; i < orders; i++) {
+            orderIds.add(addValidOrder(item, movie).getBody().getData().get(0).getOrderId());
+        }
+        checkout(orderIds.get(0)); // switches the template to a PATCH capable request factory
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<ResponseCode>> results = new ArrayList<>();
+        for (String orderId : orderIds.subList(1, orders)) {
+            String checkUrl = "http://localhost:" + port + "/orders/checkout?orderId=" + orderId;
+            results.add(executor.submit(() -> {
+                start.await();
+                return this.restTemplate.exchange(checkUrl, HttpMethod.PATCH, null, GeneralApiResponse.class)
+                        .getBody().getResponseCode();
+            }));
+        }
+        start.countDown();
+        for (Future<ResponseCode> result : results) {
+            assertEquals(ResponseCode.OK, result.get());
+        }
+        executor.shutdown();
+        ResponseEntity<OrderStatisticsApiResponse> statsResponse = getStatistics();
+
+        // Clean up
+        deleteMovie(movie);
+        orderIds.forEach(this::deleteOrder);
+        deleteStats(movie.getImdbId());
+
+        assertEquals(orders, statsResponse.getBody().getOrderStatistics().getMovieOrderCount().get(movie.getImdbId()));
+        assertEquals(orders * 3, statsResponse.getBody().getOrderStatistics().getMovieRentedFor().get(movie.getImdbId()));
+    }
+
+    @Test
+    void exportFiltersOrdersBySinceTest() {
+        OrderItem item = createOrderItem();
+        Movie movie = getMockMovie();
+        addMovie(movie);
+        String orderId = addValidOrder(item, movie).getBody().getData().get(0).getOrderId();
+
+        String exportUrl = "http://localhost:" + port + "/orders/export?since=";
+        String recent = this.restTemplate.getForObject(exportUrl + LocalDateTime.now().minusMinutes(1), String.class);
+        String future = this.restTemplate.getForObject(exportUrl + LocalDateTime.now().plusDays(1), String.class);
+
+        deleteMovie(movie);
+        deleteOrder(orderId);
+
+        assertTrue(recent.contains(orderId));
+        assertNull(future);
+    }
+
+    @Test
+    void batchOrderIsCreatedWholeOrNotAtAllTest() {
+        Movie first = getMockMovie();
+        Movie second = getMockMovie();
+        addMovie(first);
+        addMovie(second);
+        OrderItem firstItem = createOrderItem();
+        firstItem.setMovieId(first.getImdbId());
+        OrderItem secondItem = createOrderItem();
+        secondItem.setMovieId(second.getImdbId());
+        OrderItem missingItem = createOrderItem();
+        missingItem.setMovieId(UUID.randomUUID().toString());
+
+        String url = "http://localhost:" + port + "/orders/new/batch";
+        ResponseEntity<OrderApiResponse> created = this.restTemplate.postForEntity(url,
+                new HttpEntity<>(List.of(firstItem, secondItem), getJsonHeaders()), OrderApiResponse.class);
+        ResponseEntity<OrderApiResponse> rejected = this.restTemplate.postForEntity(url,
+                new HttpEntity<>(List.of(firstItem, missingItem), getJsonHeaders()), OrderApiResponse.class);
+        Order order = created.getBody().getData().get(0);
+
+        String extendUrl = "http://localhost:" + port + "/orders/extend/" + order.getOrderId() + "/batch";
+        ResponseEntity<OrderApiResponse> extendRejected = this.restTemplate.postForEntity(extendUrl,
+                new HttpEntity<>(List.of(secondItem, missingItem), getJsonHeaders()), OrderApiResponse.class);
+        ResponseEntity<OrderApiResponse> extended = this.restTemplate.postForEntity(extendUrl,
+                new HttpEntity<>(List.of(secondItem), getJsonHeaders()), OrderApiResponse.class);
+
+        deleteMovie(first);
+        deleteMovie(second);
+        deleteOrder(order.getOrderId());
+
+        assertEquals(ResponseCode.OK, created.getBody().getResponseCode());
+        assertEquals(2, order.getOrderItemList().size());
+        // Two new movies rented for 5 weeks
+        assertEquals(0, BigDecimal.valueOf(50).compareTo(order.getTotalPrice()));
+        assertEquals(ResponseCode.INVALID_REQUEST, rejected.getBody().getResponseCode());
+        assertEquals(ResponseCode.INVALID_REQUEST, extendRejected.getBody().getResponseCode());
+        assertEquals(3, extended.getBody().getData().get(0).getOrderItemList().size());
+    }
+
+    @Test
+    void retriedRequestsWithIdempotencyKeyAreReplayedTest() {
+        OrderItem item = createOrderItem();
+        Movie movie = getMockMovie();
+        addMovie(movie);
+        item.setMovieId(movie.getImdbId());
+        HttpHeaders headers = getJsonHeaders();
+        headers.set(IdempotencyStore.IDEMPOTENCY_KEY_HEADER, UUID.randomUUID().toString());
+
+        String orderAddUrl = "http://localhost:" + port + "/orders/new";
+        ResponseEntity<OrderApiResponse> first = this.restTemplate.exchange(orderAddUrl, HttpMethod.POST,
+                new HttpEntity<>(item, headers), OrderApiResponse.class);
+        ResponseEntity<OrderApiResponse> retry = this.restTemplate.exchange(orderAddUrl, HttpMethod.POST,
+                new HttpEntity<>(item, headers), OrderApiResponse.class);
+        item.setRentDurationInWeeks(item.getRentDurationInWeeks() + 1);
+        ResponseEntity<OrderApiResponse> otherRequest = this.restTemplate.exchange(orderAddUrl, HttpMethod.POST,
+                new HttpEntity<>(item, headers), OrderApiResponse.class);
+        String orderId = first.getBody().getData().get(0).getOrderId();
+
+        String checkUrl = "http://localhost:" + port + "/orders/checkout?orderId=" + orderId;
+        ResponseEntity<OrderApiResponse> checkout = this.restTemplate.exchange(checkUrl, HttpMethod.PATCH,
+                new HttpEntity<>(headers), OrderApiResponse.class);
+        ResponseEntity<OrderApiResponse> checkoutRetry = this.restTemplate.exchange(checkUrl, HttpMethod.PATCH,
+                new HttpEntity<>(headers), OrderApiResponse.class);
+
+        deleteMovie(movie);
+        deleteOrder(orderId);
+        deleteStats(movie.getImdbId());
+
+        assertEquals(orderId, retry.getBody().getData().get(0).getOrderId());
+        assertEquals("true", retry.getHeaders().getFirst(IdempotencyStore.REPLAYED_HEADER));
+        assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, otherRequest.getStatusCode());
+        assertEquals(ResponseCode.OK, checkout.getBody().getResponseCode());
+        assertEquals(ResponseCode.OK, checkoutRetry.getBody().getResponseCode());
+        assertEquals(OrderStatus.CLOSED, checkoutRetry.getBody().getData().get(0).getOrderStatus());
+    }
+
+    @Test
+    void failedRequestsWithIdempotencyKeyAreExecutedAgainTest() {
+        OrderItem item = createOrderItem();
+        Movie movie = getMockMovie();
+        item.setMovieId(movie.getImdbId());
+        HttpHeaders headers = getJsonHeaders();
+        headers.set(IdempotencyStore.IDEMPOTENCY_KEY_HEADER, UUID.randomUUID().toString());
+        String orderAddUrl = "http://localhost:" + port + "/orders/new";
+
+        // The movie does not exist yet, the order fails with HTTP 200 and INVALID_REQUEST
+        ResponseEntity<OrderApiResponse> failed = this.restTemplate.exchange(orderAddUrl, HttpMethod.POST,
+                new HttpEntity<>(item, headers), OrderApiResponse.class);
+        addMovie(movie);
+        ResponseEntity<OrderApiResponse> retry = this.restTemplate.exchange(orderAddUrl, HttpMethod.POST,
+                new HttpEntity<>(item, headers), OrderApiResponse.class);
+        String orderId = retry.getBody().getData().get(0).getOrderId();
+
+        deleteOrder(orderId);
+        deleteMovie(movie);
+
+        assertEquals(ResponseCode.INVALID_REQUEST, failed.getBody().getResponseCode());
+        assertEquals(ResponseCode.OK, retry.getBody().getResponseCode());
+        assertNull(retry.getHeaders().getFirst(IdempotencyStore.REPLAYED_HEADER));
+    }
+
+    @Test
+    void requestWaitingForFailedIdempotentRequestIsExecutedTest() throws Exception {
+        String key = UUID.randomUUID().toString();
+        CountDownLatch firstStarted = new CountDownLatch(1);
+        CountDownLatch releaseFirst = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> first = executor.submit(() -> idempotencyStore.execute("test", key, "request", () -> {
+                firstStarted.countDown();
+                try {
+                    releaseFirst.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                throw new IllegalStateException("first request failed");
+            }));
+            firstStarted.await();
+            new Thread(() -> {
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                releaseFirst.countDown();
+            }).start();
+            ResponseEntity<?> second = idempotencyStore.execute("test", key, "request",
+                    () -> new ResponseEntity<>(new GeneralApiResponse(ResponseCode.OK, "second"), HttpStatus.OK));
+
+            Exception firstFailure = assertThrows(Exception.class, first::get);
+            assertInstanceOf(IllegalStateException.class, firstFailure.getCause());
+            assertEquals("second", ((GeneralApiResponse) second.getBody()).getMessage());
+            assertNull(second.getHeaders().getFirst(IdempotencyStore.REPLAYED_HEADER));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void ordersCanBeFoundByMovieStatusAndTimestampTest() {
+        OrderItem item = createOrderItem();
+        Movie movie = getMockMovie();
+        addMovie(movie);
+        String orderId = addValidOrder(item, movie).getBody().getData().get(0).getOrderId();
+        LocalDateTime from = LocalDateTime.now().minusMinutes(1);
+
+        String url = "http://localhost:" + port + "/orders";
+        List<Order> byMovieOpen = this.restTemplate.getForObject(url + "/movie/" + movie.getImdbId(),
+                OrderApiResponse.class).getData();
+        checkout(orderId);
+        List<Order> byMovieClosed = this.restTemplate.getForObject(url + "/movie/" + movie.getImdbId(),
+                OrderApiResponse.class).getData();
+        List<String> closedIds = new ArrayList<>();
+        String cursor = null;
+        do {
+            OrderApiResponse page = this.restTemplate.getForObject(url + "/status/closed?limit=2"
+                    + (cursor == null ? "" : "&cursor=" + cursor), OrderApiResponse.class);
+            page.getData().forEach(order -> closedIds.add(order.getOrderId()));
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        List<Order> recentClosed = this.restTemplate.getForObject(url + "/between?status=CLOSED&from=" + from,
+                OrderApiResponse.class).getData();
+        List<Order> recentOpen = this.restTemplate.getForObject(url + "/between?status=OPEN&from=" + from,
+                OrderApiResponse.class).getData();
+        ResponseCode unknownStatus = this.restTemplate.getForObject(url + "/status/PENDING",
+                OrderApiResponse.class).getResponseCode();
+
+        deleteMovie(movie);
+        deleteOrder(orderId);
+        deleteStats(movie.getImdbId());
+
+        assertEquals(1, byMovieOpen.size());
+        assertEquals(OrderStatus.OPEN, byMovieOpen.get(0).getOrderStatus());
+        assertEquals(OrderStatus.CLOSED, byMovieClosed.get(0).getOrderStatus());
+        assertTrue(closedIds.contains(orderId));
+        assertTrue(recentClosed.stream().anyMatch(order -> order.getOrderId().equals(orderId)));
+        assertTrue(recentOpen.stream().noneMatch(order -> order.getOrderId().equals(orderId)));
+        assertEquals(ResponseCode.INVALID_REQUEST, unknownStatus);
+    }
 
     public void deleteStats(String movieId) {
         String delUrl = "http://localhost:" + port + "/orders/stats/clear?movieId=" + movieId;
@@ -0,0 +1,88 @@
+package ee.fujitsu.movieapi;
+
+import ee.fujitsu.movieapi.db.model.movie.MoviePriceClass;
+import ee.fujitsu.movieapi.db.model.movie.MoviePriceClass.PriceClassConstants;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks the closed-form price calculation against the pricing rule applied week by week:
+ * a rented week costs NEW_PRICE while it is at most WEEKS_NEW weeks after release,
+ * REGULAR_PRICE while it is less than WEEKS_REGULAR weeks after release and OLD_PRICE afterwards.
+ */
+public class PriceCalculationTests {
+    private static final long SEED = 20220401L;
+
+    @Test
+    void matchesWeeklyRuleAroundClassBoundaries() {
+        for (long releasedWeeksAgo = -10; releasedWeeksAgo <= PriceClassConstants.WEEKS_REGULAR + 10; releasedWeeksAgo++) {
+            for (int rentWeeks = -2; rentWeeks <= 200; rentWeeks++) {
+                assertEquals(weeklyRuleCents(releasedWeeksAgo, rentWeeks),
+                        MoviePriceClass.calculateTotalPriceCents(releasedWeeksAgo, rentWeeks),
+                        "released " + releasedWeeksAgo + " weeks ago, rented for " + rentWeeks);
+            }
+        }
+    }
+
+    @Test
+    void matchesWeeklyRuleForRandomRents() {
+        Random random = new Random(SEED);
+        for (int i = 0; i < 100_000; i++) {
+            long releasedWeeksAgo = random.nextInt(2000) - 100;
+            int rentWeeks = random.nextInt(1000);
+            assertEquals(weeklyRuleCents(releasedWeeksAgo, rentWeeks),
+                    MoviePriceClass.calculateTotalPriceCents(releasedWeeksAgo, rentWeeks),
+                    "released " + releasedWeeksAgo + " weeks ago, rented for " + rentWeeks);
+        }
+    }
+
+    @Test
+    void priceIsAdditiveOverSplitRents() {
+        Random random = new Random(SEED);
+        for (int i = 0; i < 10_000; i++) {
+            long releasedWeeksAgo = random.nextInt(400) - 20;
+            int first = random.nextInt(200);
+            int second = random.nextInt(200);
+            assertEquals(MoviePriceClass.calculateTotalPriceCents(releasedWeeksAgo, first + second),
+                    MoviePriceClass.calculateTotalPriceCents(releasedWeeksAgo, first)
+                            + MoviePriceClass.calculateTotalPriceCents(releasedWeeksAgo + first, second));
+        }
+    }
+
+    @Test
+    void totalPriceIsExactDecimal() {
+        LocalDate orderDate = LocalDate.of(2022, 4, 1);
+        // 1 new week, 109 regular weeks, 10 old weeks
+        BigDecimal price = MoviePriceClass.calculateTotalPrice(orderDate.minusWeeks(52), orderDate, 120);
+        assertEquals(new BigDecimal("5.00")
+                .add(new BigDecimal("3.49").multiply(BigDecimal.valueOf(109)))
+                .add(new BigDecimal("1.99").multiply(BigDecimal.valueOf(10))), price);
+    }
+
+    @Test
+    void priceClassesShareTheirPrices() {
+        assertSame(MoviePriceClass.NEW.getPrice(), MoviePriceClass.NEW.getPrice());
+        assertEquals(0, PriceClassConstants.NEW_PRICE.compareTo(MoviePriceClass.NEW.getPrice()));
+        assertEquals(0, PriceClassConstants.REGULAR_PRICE.compareTo(MoviePriceClass.REGULAR.getPrice()));
+        assertEquals(0, PriceClassConstants.OLD_PRICE.compareTo(MoviePriceClass.OLD.getPrice()));
+    }
+
+    private static long weeklyRuleCents(long releasedWeeksAgo, int rentWeeks) {
+        long total = 0;
+        for (long week = releasedWeeksAgo; week < releasedWeeksAgo + rentWeeks; week++) {
+            if (week <= PriceClassConstants.WEEKS_NEW) {
+                total += 500;
+            } else if (week < PriceClassConstants.WEEKS_REGULAR) {
+                total += 349;
+            } else {
+                total += 199;
+            }
+        }
+        return total;
+    }
+}
@@ -0,0 +1,121 @@
+package ee.fujitsu.movieapi.benchmark;
+
+import ch.qos.logback.classic.Level;
+import ee.fujitsu.movieapi.db.model.movie.Movie;
+import ee.fujitsu.movieapi.db.model.movie.MovieMetadata;
+import ee.fujitsu.movieapi.db.model.movie.MovieRating;
+import ee.fujitsu.movieapi.db.persistence.DataFileFormat;
+import ee.fujitsu.movieapi.db.persistence.DataFileFormats;
+import ee.fujitsu.movieapi.db.persistence.StreamingRecordReader;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares reading and writing a generated movie database in every db file format.
+ * The file size of each format is printed when the trial starts.
+ *
+ * Run with: java -cp target/test-classes:target/classes:&lt;dependencies&gt; ee.fujitsu.movieapi.benchmark.DataFileFormatBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DataFileFormatBenchmark {
+    private static final String[] CATEGORIES = {"Drama", "Crime", "Comedy", "Action", "Thriller", "Romance"};
+
+    @Param({".json", ".yaml", ".smile", ".cbor", ".bin"})
+    public String extension;
+
+    /**
+     * Number of movies in the database, every second one with metadata
+     */
+    @Param({"1000", "100000"})
+    public int movieCount;
+
+    private Path dataDirectory;
+    private DataFileFormat format;
+    private List<Movie> movies;
+    private File readFile;
+    private File writeFile;
+
+    @Setup
+    public void setUp() throws IOException {
+        // Every read logs its record count, which would otherwise be measured too
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger(StreamingRecordReader.class)).setLevel(Level.WARN);
+        dataDirectory = Files.createTempDirectory("data-file-format-benchmark");
+        format = DataFileFormats.forExtension(extension);
+        movies = generateMovies(movieCount);
+        readFile = dataDirectory.resolve("movies" + extension).toFile();
+        writeFile = dataDirectory.resolve("written" + extension).toFile();
+        format.writeRecords(readFile, Movie.class, movies);
+        System.out.println(extension + " file of " + movieCount + " movies: " + readFile.length() + " bytes");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        FileSystemUtils.deleteRecursively(dataDirectory);
+    }
+
+    @Benchmark
+    public int read(Blackhole blackhole) throws IOException {
+        return format.readRecords(readFile, Movie.class, blackhole::consume);
+    }
+
+    @Benchmark
+    public void write() throws IOException {
+        format.writeRecords(writeFile, Movie.class, movies);
+    }
+
+    static List<Movie> generateMovies(int count) {
+        Random random = new Random(42);
+        List<Movie> movies = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Movie movie = new Movie();
+            movie.setImdbId(String.format("tt%07d", i));
+            movie.setTitle("Movie title number " + i);
+            movie.setReleaseDate(LocalDate.of(1950, 1, 1).plusDays(random.nextInt(27000)));
+            movie.setCategories(Set.of(CATEGORIES[random.nextInt(CATEGORIES.length)]));
+            movie.setPriceClass();
+            movie.setPrice();
+            if (i % 2 == 0) {
+                MovieRating rating = new MovieRating();
+                rating.setSource("Internet Movie Database");
+                rating.setValue(random.nextInt(10) + "." + random.nextInt(10) + "/10");
+                MovieMetadata metadata = new MovieMetadata();
+                metadata.setDataFound(true);
+                metadata.setRated("R");
+                metadata.setRuntime(80 + random.nextInt(100) + " min");
+                metadata.setDirector("Director " + random.nextInt(1000));
+                metadata.setActors("Actor " + random.nextInt(1000) + ", Actor " + random.nextInt(1000));
+                metadata.setRatings(List.of(rating));
+                movie.setMovieMetadata(metadata);
+            }
+            movies.add(movie);
+        }
+        return movies;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(DataFileFormatBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,126 @@
+package ee.fujitsu.movieapi.benchmark;
+
+import com.sun.net.httpserver.HttpServer;
+import ee.fujitsu.movieapi.db.configuration.ApiConfiguration;
+import ee.fujitsu.movieapi.db.metadata.MovieMetadataService;
+import ee.fujitsu.movieapi.db.metadata.OmdbClient;
+import ee.fujitsu.movieapi.db.model.movie.Movie;
+import ee.fujitsu.movieapi.db.persistence.DurabilityMode;
+import ee.fujitsu.movieapi.db.repository.MovieRepository;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the local lookup used by the order pipeline with the metadata enriched lookup
+ * of /movies/id/{id}, against an omdbApi stub running in the same JVM.
+ * The metadata cache is disabled, so every enriched lookup does a round-trip to the stub.
+ *
+ * Run with: java -cp target/test-classes:target/classes:&lt;dependencies&gt; ee.fujitsu.movieapi.benchmark.MovieLookupBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MovieLookupBenchmark {
+    private static final String MOVIE_ID = "tt0111161";
+    private static final String METADATA = "{\"Response\":\"True\",\"Rated\":\"R\",\"Runtime\":\"142 min\","
+            + "\"Director\":\"Frank Darabont\",\"Ratings\":[{\"Source\":\"Internet Movie Database\",\"Value\":\"9.3/10\"}]}";
+
+    /**
+     * Simulated omdbApi latency in milliseconds
+     */
+    @Param({"0", "20"})
+    public int stubLatencyMs;
+
+    private HttpServer omdbStub;
+    private Path dataDirectory;
+    private OmdbClient omdbClient;
+    private MovieRepository movieRepository;
+
+    @Setup
+    public void setUp() throws IOException {
+        // Without TCP_NODELAY the stub answers in two segments and every call waits for a delayed ACK
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        omdbStub = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        omdbStub.createContext("/", exchange -> {
+            try {
+                Thread.sleep(stubLatencyMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = METADATA.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        omdbStub.start();
+
+        dataDirectory = Files.createTempDirectory("movie-lookup-benchmark");
+        Files.writeString(dataDirectory.resolve("movies.json"), "[{\"imdbId\":\"" + MOVIE_ID + "\","
+                + "\"title\":\"The Shawshank Redemption\",\"releaseDate\":\"14.10.1994\",\"categories\":[\"Drama\"]}]");
+
+        ApiConfiguration apiConfiguration = new ApiConfiguration();
+        ReflectionTestUtils.setField(apiConfiguration, "fileExtension", ".json");
+        ReflectionTestUtils.setField(apiConfiguration, "filePath", dataDirectory + "/");
+        ReflectionTestUtils.setField(apiConfiguration, "movieFileName", "movies");
+        ReflectionTestUtils.setField(apiConfiguration, "durabilityMode", DurabilityMode.SYNC);
+        ReflectionTestUtils.setField(apiConfiguration, "omdbUrl",
+                "http://localhost:" + omdbStub.getAddress().getPort() + "/");
+        ReflectionTestUtils.setField(apiConfiguration, "apiKey", "benchmark");
+        ReflectionTestUtils.setField(apiConfiguration, "omdbCacheMaxEntries", 0L);
+        ReflectionTestUtils.setField(apiConfiguration, "omdbCacheTtlMinutes", 1L);
+        ReflectionTestUtils.setField(apiConfiguration, "omdbMaxConnections", 10);
+        ReflectionTestUtils.setField(apiConfiguration, "omdbMaxConnectionsPerRoute", 10);
+        ReflectionTestUtils.setField(apiConfiguration, "omdbConnectTimeoutMs", 1000);
+        ReflectionTestUtils.setField(apiConfiguration, "omdbReadTimeoutMs", 2000);
+        ReflectionTestUtils.setField(apiConfiguration, "omdbAsyncThreads", 1);
+        ReflectionTestUtils.setField(apiConfiguration, "omdbAsyncQueueCapacity", 1);
+        omdbClient = new OmdbClient(apiConfiguration);
+
+        movieRepository = new MovieRepository();
+        movieRepository.setApiConfiguration(apiConfiguration);
+        movieRepository.setMetadataService(new MovieMetadataService(apiConfiguration, omdbClient));
+        movieRepository.initializeFields();
+        movieRepository.loadCatalog();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        movieRepository.close();
+        omdbClient.close();
+        omdbStub.stop(0);
+        Files.deleteIfExists(dataDirectory.resolve("movies.json"));
+        Files.deleteIfExists(dataDirectory);
+    }
+
+    @Benchmark
+    public Movie localLookup() throws Exception {
+        return movieRepository.findLocalById(MOVIE_ID);
+    }
+
+    @Benchmark
+    public Movie enrichedLookup() throws Exception {
+        return movieRepository.findById(MOVIE_ID);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(MovieLookupBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,68 @@
+package ee.fujitsu.movieapi.benchmark;
+
+import ee.fujitsu.movieapi.db.model.movie.MoviePriceClass;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the closed-form rental price calculation with the week by week summation it replaced,
+ * for a rent that crosses both the NEW/REGULAR and the REGULAR/OLD boundary.
+ *
+ * Run with: java -cp target/test-classes:target/classes:&lt;dependencies&gt; ee.fujitsu.movieapi.benchmark.PriceCalculationBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PriceCalculationBenchmark {
+    @Param({"1", "52", "520"})
+    public int rentWeeks;
+
+    private LocalDate releaseDate;
+    private LocalDate orderDate;
+
+    @Setup
+    public void setUp() {
+        orderDate = LocalDate.of(2022, 4, 1);
+        releaseDate = orderDate.minusWeeks(40);
+    }
+
+    @Benchmark
+    public long closedFormCents() {
+        return MoviePriceClass.calculateTotalPriceCents(40, rentWeeks);
+    }
+
+    @Benchmark
+    public BigDecimal closedForm() {
+        return MoviePriceClass.calculateTotalPrice(releaseDate, orderDate, rentWeeks);
+    }
+
+    @Benchmark
+    public BigDecimal weekByWeek() {
+        double total = 0;
+        for (long week = 40; week < 40 + rentWeeks; week++) {
+            if (week <= MoviePriceClass.PriceClassConstants.WEEKS_NEW) {
+                total += 5.0;
+            } else if (week < MoviePriceClass.PriceClassConstants.WEEKS_REGULAR) {
+                total += 3.49;
+            } else {
+                total += 1.99;
+            }
+        }
+        return BigDecimal.valueOf(total);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(PriceCalculationBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,90 @@
+package ee.fujitsu.movieapi.benchmark;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import ee.fujitsu.movieapi.db.model.movie.Movie;
+import ee.fujitsu.movieapi.db.persistence.TypedMapper;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares json serialization of a movie list with a mapper built per call, a shared mapper with reflective
+ * accessors, and the shared per-type readers and writers of TypedMapper with Blackbird generated accessors.
+ * The main method adds the GC profiler, whose gc.alloc.rate.norm column is the allocation per operation.
+ *
+ * Run with: java -cp target/test-classes:target/classes:&lt;dependencies&gt; ee.fujitsu.movieapi.benchmark.SerializationBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+    @Param({"1000"})
+    public int movieCount;
+
+    private List<Movie> movies;
+    private byte[] json;
+    private ObjectMapper sharedMapper;
+    private TypedMapper typedMapper;
+
+    @Setup
+    public void setUp() throws IOException {
+        movies = DataFileFormatBenchmark.generateMovies(movieCount);
+        sharedMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+        // Finds the Blackbird module on the classpath, as the db file mappers do
+        typedMapper = new TypedMapper(new ObjectMapper().findAndRegisterModules());
+        json = sharedMapper.writeValueAsBytes(movies);
+    }
+
+    @Benchmark
+    public byte[] writeWithNewMapper() throws IOException {
+        return new ObjectMapper().registerModule(new JavaTimeModule()).writeValueAsBytes(movies);
+    }
+
+    @Benchmark
+    public byte[] writeWithSharedMapper() throws IOException {
+        return sharedMapper.writeValueAsBytes(movies);
+    }
+
+    @Benchmark
+    public byte[] writeWithTypedWriter() throws IOException {
+        return typedMapper.collectionWriterFor(Movie.class).writeValueAsBytes(movies);
+    }
+
+    @Benchmark
+    public Movie[] readWithNewMapper() throws IOException {
+        return new ObjectMapper().registerModule(new JavaTimeModule()).readValue(json, Movie[].class);
+    }
+
+    @Benchmark
+    public Movie[] readWithSharedMapper() throws IOException {
+        return sharedMapper.readValue(json, Movie[].class);
+    }
+
+    @Benchmark
+    public void readWithTypedReader(Blackhole blackhole) throws IOException {
+        try (MappingIterator<Movie> records = typedMapper.readerFor(Movie.class).readValues(json)) {
+            while (records.hasNextValue()) {
+                blackhole.consume(records.nextValue());
+            }
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(SerializationBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}